@@ -0,0 +1,47 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.authenticator;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.core.CounterHmacSha1;
+
+/**
+ * {@link PasscodeGenerator.Signer} backed by {@link CounterHmacSha1}. The Signer interface is package private, hence
+ * the package of this adapter.
+ */
+public final class KernelSigner implements PasscodeGenerator.Signer {
+
+    private final CounterHmacSha1 mac;
+
+    public KernelSigner(byte[] key) {
+        this.mac = new CounterHmacSha1(key);
+    }
+
+    @Override
+    public byte[] sign(byte[] data) {
+        return mac.sign(data);
+    }
+
+    /**
+     * @param key   Raw shared secret
+     * @param clock Clock responsible for retrieve the current interval
+     * @return Six digits, 30 seconds generator signing with the kernel
+     */
+    public static PasscodeGenerator generator(byte[] key, Clock clock) {
+        return new PasscodeGenerator(new KernelSigner(key), 6, 30, clock);
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one code per HMAC algorithm, with a prepared secret and with an initialized JCE Mac, using the seeds of
+ * the RFC 6238 test vectors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AlgorithmBenchmark {
+
+    private static final String SEED = "1234567890123456789012345678901234567890123456789012345678901234";
+
+    @Param({"SHA1", "SHA256", "SHA512"})
+    public HmacAlgorithm algorithm;
+
+    private PreparedSecret prepared;
+    private Mac mac;
+    private ByteBuffer challenge;
+    private long interval;
+
+    @Setup
+    public void setUp() throws Exception {
+        int seedLength = algorithm == HmacAlgorithm.SHA1 ? 20 : algorithm == HmacAlgorithm.SHA256 ? 32 : 64;
+        byte[] key = SEED.substring(0, seedLength).getBytes("US-ASCII");
+        prepared = new PreparedSecret(key, algorithm, Digits.SIX);
+        mac = Mac.getInstance(algorithm.getMacName());
+        mac.init(new SecretKeySpec(key, "RAW"));
+        challenge = ByteBuffer.allocate(8);
+        interval = TotpState.FIXED_INTERVAL;
+    }
+
+    @Benchmark
+    public int prepared() {
+        return prepared.code(interval);
+    }
+
+    @Benchmark
+    public byte[] jceMac() {
+        ((Buffer) challenge).clear();
+        challenge.putLong(interval);
+        return mac.doFinal(challenge.array());
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import com.google.authenticator.Base32String;
+import org.jboss.aerogear.security.otp.api.Base32;
+import org.jboss.aerogear.security.otp.codec.Base32Codec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base32 decoding and encoding of a shared secret with Google Authenticator's Base32String, aerogear-otp-java's
+ * Base32 and the lookup table codec.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Base32Benchmark {
+
+    @Param({"B2374TNIQ3HKC446", "R5MB5FAQNX5UIPWL"})
+    public String secret;
+
+    private byte[] decoded;
+    private byte[] out;
+    private StringBuilder builder;
+
+    @Setup
+    public void setUp() throws Exception {
+        decoded = Base32Codec.decode(secret);
+        out = new byte[decoded.length];
+        builder = new StringBuilder(secret.length());
+    }
+
+    @Benchmark
+    public byte[] decodeBase32String() throws Exception {
+        return Base32String.decode(secret);
+    }
+
+    @Benchmark
+    public byte[] decodeBase32() throws Exception {
+        return Base32.decode(secret);
+    }
+
+    @Benchmark
+    public byte[] decodeCodec() throws Exception {
+        Base32Codec.decode(secret, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public String encodeBase32String() {
+        return Base32String.encode(decoded);
+    }
+
+    @Benchmark
+    public StringBuilder encodeCodec() {
+        builder.setLength(0);
+        Base32Codec.encode(decoded, 0, decoded.length, builder);
+        return builder;
+    }
+}
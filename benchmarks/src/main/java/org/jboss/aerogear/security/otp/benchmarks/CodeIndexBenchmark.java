@@ -0,0 +1,95 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import org.jboss.aerogear.security.otp.core.CodeIndex;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of a code-only submission among a population of candidates:
+ * <ul>
+ * <li>scan - verifies the code against the current and previous intervals of every candidate</li>
+ * <li>index - looks the code up in a {@link CodeIndex}</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodeIndexBenchmark {
+
+    @Param({"1000", "100000"})
+    public int users;
+
+    private PreparedSecret[] secrets;
+    private CodeIndex index;
+    private int code;
+
+    @Setup
+    public void setUp() {
+        FixedClock clock = new FixedClock(TotpState.FIXED_INTERVAL);
+        index = new CodeIndex(clock);
+        secrets = new PreparedSecret[users];
+        Random random = new Random(42);
+        byte[] key = new byte[20];
+        for (int i = 0; i < users; i++) {
+            random.nextBytes(key);
+            secrets[i] = new PreparedSecret(key);
+            index.register(i, secrets[i]);
+        }
+        code = secrets[random.nextInt(users)].code(TotpState.FIXED_INTERVAL);
+        index.candidates(code);
+    }
+
+    @TearDown
+    public void tearDown() {
+        index.close();
+    }
+
+    @Benchmark
+    public int scan() {
+        int matches = 0;
+        for (PreparedSecret secret : secrets) {
+            if (secret.code(TotpState.FIXED_INTERVAL) == code || secret.code(TotpState.FIXED_INTERVAL - 1) == code) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public long[] index() {
+        return index.candidates(code);
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.store.SecretFile;
+import org.jboss.aerogear.security.otp.store.SecretVault;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup to first verification over a population of users:
+ * <ul>
+ * <li>mapped - maps a secret file and verifies the code of one user</li>
+ * <li>loaded - fills a vault with every secret, as a boot from the database does, then verifies the same code</li>
+ * </ul>
+ * Each invocation is a single shot, so the figures are cold start latencies rather than steady state throughput.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=4g")
+@State(Scope.Benchmark)
+public class ColdStartBenchmark {
+
+    private static final long TIME = TotpState.FIXED_INTERVAL * 30;
+
+    @Param({"1000000"})
+    public int users;
+
+    private File file;
+    private byte[][] keys;
+    private long userId;
+    private int code;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        keys = new byte[users][];
+        SecretFile.Writer writer = new SecretFile.Writer();
+        for (int id = 0; id < users; id++) {
+            keys[id] = new byte[20];
+            random.nextBytes(keys[id]);
+            writer.add(id, keys[id], HmacAlgorithm.SHA1, Digits.SIX, 30);
+        }
+        file = File.createTempFile("secrets", ".bin");
+        writer.write(file);
+        userId = random.nextInt(users);
+        code = new SecretFile(file).code(userId, TIME);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public boolean mapped() throws IOException {
+        return new SecretFile(file).verify(userId, code, TIME, 1);
+    }
+
+    @Benchmark
+    public boolean loaded() {
+        SecretVault vault = new SecretVault(users);
+        for (int id = 0; id < users; id++) {
+            vault.put(id, keys[id], HmacAlgorithm.SHA1, Digits.SIX);
+        }
+        long interval = TIME / 30;
+        return vault.code(userId, interval) == code || vault.code(userId, interval - 1) == code;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import org.jboss.aerogear.security.otp.core.DriftTracker;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.core.WindowVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verification of a phone whose clock lags by {@code drift} intervals, with the full symmetric window of two
+ * intervals and with a {@link DriftTracker} that learned the drift. Valid and wrong codes are measured apart, a
+ * wrong code being the cost of a retry or of a flood.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DriftBenchmark {
+
+    private static final String SECRET = "B2374TNIQ3HKC446";
+    private static final long USER_ID = 42L;
+
+    @Param({"0", "1", "2"})
+    public int drift;
+
+    private int validCode;
+    private int wrongCode;
+    private PreparedSecret secret;
+    private WindowVerifier verifier;
+    private DriftTracker tracker;
+
+    @Setup
+    public void setUp() throws Exception {
+        FixedClock clock = new FixedClock(TotpState.FIXED_INTERVAL);
+        secret = new PreparedSecret(SECRET);
+        validCode = secret.code(TotpState.FIXED_INTERVAL - drift);
+        wrongCode = (validCode + 1) % 1000000;
+
+        verifier = new WindowVerifier(clock, 2, 2);
+        tracker = new DriftTracker(clock);
+        tracker.verify(USER_ID, secret, validCode);
+        tracker.verify(USER_ID, secret, validCode);
+    }
+
+    @Benchmark
+    public boolean windowVerifierValid() {
+        return verifier.verify(secret, validCode);
+    }
+
+    @Benchmark
+    public boolean driftTrackerValid() {
+        return tracker.verify(USER_ID, secret, validCode);
+    }
+
+    @Benchmark
+    public boolean windowVerifierWrong() {
+        return verifier.verify(secret, wrongCode);
+    }
+
+    @Benchmark
+    public boolean driftTrackerWrong() {
+        // A miss unsettles the user, a valid code settles it again
+        boolean valid = tracker.verify(USER_ID, secret, wrongCode);
+        tracker.verify(USER_ID, secret, validCode);
+        return valid;
+    }
+}
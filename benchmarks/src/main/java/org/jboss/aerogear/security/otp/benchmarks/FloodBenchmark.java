@@ -0,0 +1,116 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import org.jboss.aerogear.security.otp.Totp;
+import org.jboss.aerogear.security.otp.api.Base32;
+import org.jboss.aerogear.security.otp.core.CodeFilter;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brute-force flood: random codes, drawn from a pregenerated pool, submitted for random users of a population,
+ * nearly all of them wrong.
+ * <ul>
+ * <li>totp - Totp.verify(String)</li>
+ * <li>prepared - the same window checked with prepared secrets</li>
+ * <li>filtered - the window checked through a {@link CodeFilter}</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FloodBenchmark {
+
+    private static final int CODES = 1 << 12;
+
+    @Param({"100000"})
+    public int users;
+
+    private final int[] codes = new int[CODES];
+    private final String[] codeStrings = new String[CODES];
+
+    private Totp[] totps;
+    private PreparedSecret[] secrets;
+    private CodeFilter filter;
+
+    @Setup
+    public void setUp() {
+        FixedClock clock = new FixedClock(TotpState.FIXED_INTERVAL);
+        totps = new Totp[users];
+        secrets = new PreparedSecret[users];
+        filter = new CodeFilter(clock);
+        Random random = new Random(42);
+        byte[] key = new byte[20];
+        for (int i = 0; i < users; i++) {
+            random.nextBytes(key);
+            totps[i] = new Totp(Base32.encode(key), clock);
+            secrets[i] = new PreparedSecret(key);
+            filter.register(i, secrets[i]);
+        }
+        filter.build(TotpState.FIXED_INTERVAL - 1);
+        filter.build(TotpState.FIXED_INTERVAL);
+        for (int i = 0; i < CODES; i++) {
+            codes[i] = random.nextInt(1000000);
+            codeStrings[i] = String.format("%06d", codes[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        filter.close();
+    }
+
+    @Benchmark
+    public boolean totp() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return totps[random.nextInt(users)].verify(codeStrings[random.nextInt(CODES)]);
+    }
+
+    @Benchmark
+    public boolean prepared() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        PreparedSecret secret = secrets[random.nextInt(users)];
+        int code = codes[random.nextInt(CODES)];
+        return secret.code(TotpState.FIXED_INTERVAL) == code || secret.code(TotpState.FIXED_INTERVAL - 1) == code;
+    }
+
+    @Benchmark
+    public boolean filtered() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int user = random.nextInt(users);
+        return filter.verify(user, secrets[user], codes[random.nextInt(CODES)]);
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import com.google.authenticator.GoogleAuthenticator;
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.core.MacPool;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of threads hammering a single generator, reported in ops/s:
+ * <ul>
+ * <li>computePin - GoogleAuthenticator, a new HMac per pin</li>
+ * <li>synchronizedMac - one JCA Mac behind a lock</li>
+ * <li>threadLocal, perCarrier, striped - the {@link MacPool} strategies</li>
+ * </ul>
+ * {@link #main(String[])} runs them with 1 to 64 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MacPoolBenchmark {
+
+    private static final String SECRET = "B2374TNIQ3HKC446";
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private FixedClock clock;
+    private MacPool threadLocal;
+    private MacPool perCarrier;
+    private MacPool striped;
+    private Mac mac;
+
+    @Setup
+    public void setUp() throws Exception {
+        clock = new FixedClock(TotpState.FIXED_INTERVAL);
+        byte[] key = new PreparedSecret(SECRET).getKey();
+        threadLocal = MacPool.threadLocal(key, HmacAlgorithm.SHA1, Digits.SIX);
+        perCarrier = MacPool.perCarrier(key, HmacAlgorithm.SHA1, Digits.SIX);
+        striped = MacPool.striped(key, HmacAlgorithm.SHA1, Digits.SIX, 64);
+        mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(key, "HmacSHA1"));
+    }
+
+    @Benchmark
+    public String computePin() {
+        return GoogleAuthenticator.computePin(SECRET, clock);
+    }
+
+    @Benchmark
+    public byte[] synchronizedMac() {
+        long counter = clock.getCurrentInterval();
+        byte[] message = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            message[i] = (byte) counter;
+            counter >>>= 8;
+        }
+        synchronized (mac) {
+            return mac.doFinal(message);
+        }
+    }
+
+    @Benchmark
+    public int threadLocal() {
+        return threadLocal.code(clock.getCurrentInterval());
+    }
+
+    @Benchmark
+    public int perCarrier() {
+        return perCarrier.code(clock.getCurrentInterval());
+    }
+
+    @Benchmark
+    public int striped() {
+        return striped.code(clock.getCurrentInterval());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder()
+                    .include(MacPoolBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import org.jboss.aerogear.security.otp.core.MeteredVerifier;
+import org.jboss.aerogear.security.otp.core.OtpMetrics;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.core.RecordingMetrics;
+import org.jboss.aerogear.security.otp.core.WindowVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the metrics on the verification of a code from the previous interval, two HMACs:
+ * <ul>
+ * <li>plain - {@link WindowVerifier}, no instrumentation</li>
+ * <li>disabled - {@link MeteredVerifier} with {@link OtpMetrics#DISABLED}</li>
+ * <li>timed - every verification timed and counted</li>
+ * <li>sampled - every verification counted, one in 16 timed</li>
+ * </ul>
+ * Run it with several threads, e.g. -t 4, to include the contention on the shared counters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private PreparedSecret secret;
+    private int code;
+    private WindowVerifier plain;
+    private MeteredVerifier disabled;
+    private MeteredVerifier timed;
+    private MeteredVerifier sampled;
+
+    @Setup
+    public void setUp() {
+        FixedClock clock = new FixedClock(TotpState.FIXED_INTERVAL);
+        secret = new PreparedSecret("B2374TNIQ3HKC446");
+        code = secret.code(TotpState.FIXED_INTERVAL - 1);
+        plain = new WindowVerifier(clock, 1, 0);
+        disabled = new MeteredVerifier(clock, 1, 0, OtpMetrics.DISABLED);
+        timed = new MeteredVerifier(clock, 1, 0, new RecordingMetrics());
+        sampled = new MeteredVerifier(clock, 1, 0, new RecordingMetrics(16, 8));
+    }
+
+    @Benchmark
+    public boolean plain() {
+        return plain.verify(secret, code);
+    }
+
+    @Benchmark
+    public boolean disabled() {
+        return disabled.verify(1L, secret, code);
+    }
+
+    @Benchmark
+    public boolean timed() {
+        return timed.verify(1L, secret, code);
+    }
+
+    @Benchmark
+    public boolean sampled() {
+        return sampled.verify(1L, secret, code);
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import com.google.authenticator.GoogleAuthenticator;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a code with and without a prepared secret. The unprepared paths decode the Base32 secret and absorb the
+ * key blocks on every call, as GoogleAuthenticator.computePin does through HMac.init.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreparedSecretBenchmark {
+
+    @Param({"B2374TNIQ3HKC446", "R5MB5FAQNX5UIPWL"})
+    public String secret;
+
+    private FixedClock clock;
+    private PreparedSecret prepared;
+
+    @Setup
+    public void setUp() {
+        clock = new FixedClock(TotpState.FIXED_INTERVAL);
+        prepared = new PreparedSecret(secret);
+    }
+
+    @Benchmark
+    public String computePin() {
+        return GoogleAuthenticator.computePin(secret, clock);
+    }
+
+    @Benchmark
+    public int unprepared() {
+        return new PreparedSecret(secret).code(clock.getCurrentInterval());
+    }
+
+    @Benchmark
+    public int prepared() {
+        return prepared.code(clock.getCurrentInterval());
+    }
+}
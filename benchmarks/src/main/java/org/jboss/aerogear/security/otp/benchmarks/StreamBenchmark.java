@@ -0,0 +1,167 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.stream.AuthEvent;
+import org.jboss.aerogear.security.otp.stream.Verdict;
+import org.jboss.aerogear.security.otp.stream.VerdictProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second through a {@link VerdictProcessor}, fed by a synchronous in-memory publisher and drained by a
+ * subscriber requesting a batch at a time. Half of the codes are valid.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamBenchmark {
+
+    private static final int EVENTS = 10000;
+    private static final int USERS = 1000;
+
+    @Param({"16", "256"})
+    public int batchSize;
+
+    private final AuthEvent[] events = new AuthEvent[EVENTS];
+    private final PreparedSecret[] secrets = new PreparedSecret[USERS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        byte[] key = new byte[20];
+        for (int i = 0; i < USERS; i++) {
+            random.nextBytes(key);
+            secrets[i] = new PreparedSecret(key);
+        }
+        long time = TotpState.FIXED_INTERVAL * 30;
+        for (int i = 0; i < EVENTS; i++) {
+            int user = random.nextInt(USERS);
+            int code = i % 2 == 0 ? secrets[user].code(TotpState.FIXED_INTERVAL) : random.nextInt(1000000);
+            events[i] = new AuthEvent(user, code, time);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int verdicts() {
+        VerdictProcessor processor = new VerdictProcessor(userId -> secrets[(int) userId], batchSize);
+        CountingSubscriber subscriber = new CountingSubscriber(batchSize);
+        new ArrayPublisher(events).subscribe(processor);
+        processor.subscribe(subscriber);
+        return subscriber.valid;
+    }
+
+    private static final class ArrayPublisher implements Publisher<AuthEvent> {
+
+        private final AuthEvent[] events;
+        private int emitted;
+        private long requested;
+        private boolean emitting;
+        private boolean cancelled;
+
+        ArrayPublisher(AuthEvent[] events) {
+            this.events = events;
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super AuthEvent> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (requested > 0 && emitted < events.length && !cancelled) {
+                        requested--;
+                        subscriber.onNext(events[emitted++]);
+                    }
+                    emitting = false;
+                    if (emitted == events.length && !cancelled) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static final class CountingSubscriber implements Subscriber<Verdict> {
+
+        private final int batchSize;
+        private Subscription subscription;
+        private int received;
+        int valid;
+
+        CountingSubscriber(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(batchSize);
+        }
+
+        @Override
+        public void onNext(Verdict verdict) {
+            if (verdict.isValid()) {
+                valid++;
+            }
+            if (++received == batchSize) {
+                received = 0;
+                subscription.request(batchSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import org.jboss.aerogear.security.otp.Totp;
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.core.TotpGenerator;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Shared fixtures for the generation benchmarks. The secrets and clocks are the ones exercised by TotpTest:
+ * <ul>
+ * <li>fixed - the interval pinned by testLeadingZeros</li>
+ * <li>system - the default 30 seconds wall clock</li>
+ * <li>custom - the 20 seconds clock of testCustomInterval</li>
+ * </ul>
+ * The state is scoped to the whole benchmark, so multithreaded runs share a single Totp instance.
+ */
+@State(Scope.Benchmark)
+public class TotpState {
+
+    static final long FIXED_INTERVAL = 45187109L;
+
+    @Param({"B2374TNIQ3HKC446", "R5MB5FAQNX5UIPWL"})
+    public String secret;
+
+    @Param({"fixed", "system", "custom"})
+    public String clockType;
+
+    public Clock clock;
+    public Totp totp;
+    public TotpGenerator generator;
+
+    @Setup
+    public void setUp() {
+        clock = createClock(clockType);
+        totp = new Totp(secret, clock);
+        generator = new TotpGenerator(secret, clock);
+    }
+
+    static Clock createClock(String clockType) {
+        if ("fixed".equals(clockType)) {
+            return new FixedClock(FIXED_INTERVAL);
+        } else if ("system".equals(clockType)) {
+            return new Clock();
+        } else if ("custom".equals(clockType)) {
+            return new Clock(20);
+        }
+        throw new IllegalArgumentException("Unknown clock type: " + clockType);
+    }
+}
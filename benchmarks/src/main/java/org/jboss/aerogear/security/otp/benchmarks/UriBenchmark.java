@@ -0,0 +1,83 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import org.jboss.aerogear.security.otp.Totp;
+import org.jboss.aerogear.security.otp.codec.OtpauthUri;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * otpauth URI of a shared secret with Totp.uri(String) and with {@link OtpauthUri} writing into a reused builder
+ * and a reused buffer. Run with {@code -prof gc}: the writer allocates nothing per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UriBenchmark {
+
+    private static final String SECRET = "B2374TNIQ3HKC446";
+
+    @Param({"john", "john#doe", "jöhn.dœ@example.com"})
+    public String name;
+
+    private Totp totp;
+    private StringBuilder builder;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        totp = new Totp(SECRET);
+        builder = new StringBuilder(256);
+        buffer = ByteBuffer.allocate(256);
+    }
+
+    @Benchmark
+    public String totpUri() {
+        return totp.uri(name);
+    }
+
+    @Benchmark
+    public StringBuilder writerBuilder() {
+        builder.setLength(0);
+        OtpauthUri.write(name, SECRET, builder);
+        return builder;
+    }
+
+    @Benchmark
+    public ByteBuffer writerBuffer() {
+        ((Buffer) buffer).clear();
+        OtpauthUri.write(name, SECRET, buffer);
+        return buffer;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.store.SecretVault;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codes of random users computed from the off-heap keys of a populated vault. Run it with -prof gc to check that
+ * the lookups do not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=4g")
+@State(Scope.Benchmark)
+public class VaultBenchmark {
+
+    @Param({"1000000"})
+    public int users;
+
+    private SecretVault vault;
+
+    @Setup
+    public void setUp() {
+        vault = new SecretVault(users);
+        Random random = new Random(42);
+        byte[] key = new byte[20];
+        for (long id = 0; id < users; id++) {
+            random.nextBytes(key);
+            vault.put(id, key, HmacAlgorithm.SHA1, Digits.SIX);
+        }
+    }
+
+    @Benchmark
+    public int code() {
+        return vault.code(ThreadLocalRandom.current().nextInt(users), TotpState.FIXED_INTERVAL);
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.benchmarks;
+
+import com.google.authenticator.PasscodeGenerator;
+import org.bouncycastle.crypto.Mac;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.core.WindowVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worst case verification, a wrong code that is checked against every interval of a symmetric window, as sent by a
+ * brute-force flood. The text variants parse the submitted String once instead of formatting and comparing a String
+ * per interval.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WindowBenchmark {
+
+    private static final String SECRET = "B2374TNIQ3HKC446";
+
+    @Param({"1", "2", "4"})
+    public int window;
+
+    private int code;
+    private String codeString;
+    private PasscodeGenerator passcodeGenerator;
+    private WindowVerifier verifier;
+    private PreparedSecret secret;
+    private WindowVerifier.CodeWindow codeWindow;
+
+    @Setup
+    public void setUp() throws Exception {
+        FixedClock clock = new FixedClock(TotpState.FIXED_INTERVAL);
+        secret = new PreparedSecret(SECRET);
+        code = (secret.code(TotpState.FIXED_INTERVAL) + 1) % 1000000;
+        codeString = String.format("%06d", code);
+
+        Mac mac = new HMac(new SHA1Digest());
+        mac.init(new KeyParameter(secret.getKey()));
+        passcodeGenerator = new PasscodeGenerator(mac, clock);
+        verifier = new WindowVerifier(clock, window, window);
+        codeWindow = verifier.window(secret);
+    }
+
+    @Benchmark
+    public boolean verifyTimeoutCode() {
+        return passcodeGenerator.verifyTimeoutCode(codeString, window, window);
+    }
+
+    @Benchmark
+    public boolean windowVerifier() {
+        return verifier.verify(secret, code);
+    }
+
+    @Benchmark
+    public boolean codeWindow() {
+        return codeWindow.verify(code);
+    }
+
+    @Benchmark
+    public boolean windowVerifierText() {
+        return verifier.verify(secret, codeString);
+    }
+
+    @Benchmark
+    public boolean codeWindowText() {
+        return codeWindow.verify(codeString);
+    }
+}
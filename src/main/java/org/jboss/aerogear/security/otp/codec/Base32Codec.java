@@ -0,0 +1,234 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base32 (RFC 4648 alphabet, no padding) codec driven by a 128-entry lookup table. It accepts the same input as
+ * Google Authenticator's Base32String: letters in any case, '-' and ' ' separators anywhere, surrounding whitespace
+ * and trailing bits that do not fill a byte. Non-ASCII characters are rejected. Decoding can write straight into a
+ * caller supplied array or buffer, in which case it does not allocate.
+ */
+public final class Base32Codec {
+
+    private static final char[] DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+    private static final int SHIFT = 5;
+    private static final int MASK = DIGITS.length - 1;
+
+    private static final byte INVALID = -1;
+    private static final byte SEPARATOR = -2;
+    private static final byte[] LOOKUP = new byte[128];
+
+    static {
+        for (int i = 0; i < LOOKUP.length; i++) {
+            LOOKUP[i] = INVALID;
+        }
+        for (int i = 0; i < DIGITS.length; i++) {
+            LOOKUP[DIGITS[i]] = (byte) i;
+            LOOKUP[Character.toLowerCase(DIGITS[i])] = (byte) i;
+        }
+        LOOKUP['-'] = SEPARATOR;
+        LOOKUP[' '] = SEPARATOR;
+    }
+
+    private Base32Codec() {
+    }
+
+    /**
+     * @param encoded Base32 encoded data
+     * @return Number of bytes the encoded data decodes to
+     * @throws DecodingException If the data contains an illegal character
+     */
+    public static int decodedLength(CharSequence encoded) throws DecodingException {
+        int start = start(encoded);
+        int end = end(encoded, start);
+        int significant = 0;
+        for (int i = start; i < end; i++) {
+            if (value(encoded, i) != SEPARATOR) {
+                significant++;
+            }
+        }
+        return significant * SHIFT / 8;
+    }
+
+    /**
+     * @param encoded Base32 encoded data
+     * @return Decoded data
+     * @throws DecodingException If the data contains an illegal character
+     */
+    public static byte[] decode(CharSequence encoded) throws DecodingException {
+        byte[] decoded = new byte[decodedLength(encoded)];
+        decodeInto(encoded, decoded, 0);
+        return decoded;
+    }
+
+    /**
+     * Decodes into a caller supplied array
+     *
+     * @param encoded Base32 encoded data
+     * @param out     Destination array
+     * @param offset  Position of the first decoded byte in the destination
+     * @return Number of decoded bytes
+     * @throws DecodingException        If the data contains an illegal character
+     * @throws IllegalArgumentException If the decoded data does not fit, the destination is left untouched then
+     */
+    public static int decode(CharSequence encoded, byte[] out, int offset) throws DecodingException {
+        checkRoom(decodedLength(encoded), out.length - offset);
+        return decodeInto(encoded, out, offset);
+    }
+
+    private static int decodeInto(CharSequence encoded, byte[] out, int offset) throws DecodingException {
+        int start = start(encoded);
+        int end = end(encoded, start);
+        int next = offset;
+        int buffer = 0;
+        int bitsLeft = 0;
+        for (int i = start; i < end; i++) {
+            int value = value(encoded, i);
+            if (value == SEPARATOR) {
+                continue;
+            }
+            buffer = (buffer << SHIFT) | value;
+            bitsLeft += SHIFT;
+            if (bitsLeft >= 8) {
+                bitsLeft -= 8;
+                out[next++] = (byte) (buffer >> bitsLeft);
+            }
+        }
+        return next - offset;
+    }
+
+    /**
+     * Decodes into a caller supplied buffer, starting at its position
+     *
+     * @param encoded Base32 encoded data
+     * @param out     Destination buffer, its position is advanced past the decoded bytes
+     * @return Number of decoded bytes
+     * @throws DecodingException        If the data contains an illegal character
+     * @throws IllegalArgumentException If the decoded data does not fit, the buffer is left untouched then
+     */
+    public static int decode(CharSequence encoded, ByteBuffer out) throws DecodingException {
+        checkRoom(decodedLength(encoded), out.remaining());
+        int start = start(encoded);
+        int end = end(encoded, start);
+        int written = 0;
+        int buffer = 0;
+        int bitsLeft = 0;
+        for (int i = start; i < end; i++) {
+            int value = value(encoded, i);
+            if (value == SEPARATOR) {
+                continue;
+            }
+            buffer = (buffer << SHIFT) | value;
+            bitsLeft += SHIFT;
+            if (bitsLeft >= 8) {
+                bitsLeft -= 8;
+                out.put((byte) (buffer >> bitsLeft));
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * @param data Data to encode
+     * @return Base32 encoded data
+     */
+    public static String encode(byte[] data) {
+        StringBuilder out = new StringBuilder(encodedLength(data.length));
+        encode(data, 0, data.length, out);
+        return out.toString();
+    }
+
+    /**
+     * @param length Number of bytes to encode
+     * @return Number of characters they encode to
+     */
+    public static int encodedLength(int length) {
+        return (int) (((long) length * 8 + SHIFT - 1) / SHIFT);
+    }
+
+    /**
+     * Encodes into a caller supplied builder
+     *
+     * @param data   Data to encode
+     * @param offset Position of the first byte to encode
+     * @param length Number of bytes to encode
+     * @param out    Destination builder
+     */
+    public static void encode(byte[] data, int offset, int length, StringBuilder out) {
+        int end = offset + length;
+        int buffer = 0;
+        int bitsLeft = 0;
+        for (int i = offset; i < end; i++) {
+            buffer = (buffer << 8) | (data[i] & 0xff);
+            bitsLeft += 8;
+            while (bitsLeft >= SHIFT) {
+                bitsLeft -= SHIFT;
+                out.append(DIGITS[(buffer >> bitsLeft) & MASK]);
+            }
+        }
+        if (bitsLeft > 0) {
+            out.append(DIGITS[(buffer << (SHIFT - bitsLeft)) & MASK]);
+        }
+    }
+
+    private static void checkRoom(int length, int room) {
+        if (length > room) {
+            throw new IllegalArgumentException("Destination too small for " + length + " bytes: " + room);
+        }
+    }
+
+    private static int start(CharSequence encoded) {
+        int start = 0;
+        while (start < encoded.length() && isTrimmed(encoded.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int end(CharSequence encoded, int start) {
+        int end = encoded.length();
+        while (end > start && isTrimmed(encoded.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isTrimmed(char c) {
+        return c <= ' ' || c == '-';
+    }
+
+    private static int value(CharSequence encoded, int index) throws DecodingException {
+        char c = encoded.charAt(index);
+        int value = c < LOOKUP.length ? LOOKUP[c] : INVALID;
+        if (value == INVALID) {
+            throw new DecodingException("Illegal character: " + c);
+        }
+        return value;
+    }
+
+    public static class DecodingException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        public DecodingException(String message) {
+            super(message);
+        }
+    }
+}
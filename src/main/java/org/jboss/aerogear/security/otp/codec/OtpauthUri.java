@@ -0,0 +1,222 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.codec;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.Codes;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writer of otpauth URIs into caller supplied builders or buffers, without allocating. The label and the issuer are
+ * form encoded as {@link java.net.URLEncoder} does with UTF-8, so the output of
+ * {@link #write(CharSequence, CharSequence, StringBuilder)} is the one of
+ * {@link org.jboss.aerogear.security.otp.Totp#uri(String)}.
+ * <p/>
+ * Parameters that differ from the defaults of the key URI format, SHA1, 6 digits and 30 seconds, are appended
+ * after the secret, as are the issuer when there is one.
+ */
+public final class OtpauthUri {
+
+    private static final String PREFIX = "otpauth://totp/";
+    private static final String SECRET = "?secret=";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final int DEFAULT_PERIOD = 30;
+
+    private OtpauthUri() {
+    }
+
+    /**
+     * @param name   Account name
+     * @param secret Base32 encoded shared secret
+     * @param out    Destination builder
+     */
+    public static void write(CharSequence name, CharSequence secret, StringBuilder out) {
+        write(name, secret, null, HmacAlgorithm.SHA1, Digits.SIX, DEFAULT_PERIOD, out);
+    }
+
+    /**
+     * @param name      Account name
+     * @param secret    Base32 encoded shared secret
+     * @param issuer    Provider of the account, or null
+     * @param algorithm HMAC algorithm
+     * @param digits    Length of the codes
+     * @param period    Interval length in seconds
+     * @param out       Destination builder
+     */
+    public static void write(CharSequence name, CharSequence secret, CharSequence issuer, HmacAlgorithm algorithm,
+                             Digits digits, int period, StringBuilder out) {
+        checkPeriod(period);
+        out.append(PREFIX);
+        encode(name, out);
+        out.append(SECRET).append(secret);
+        if (issuer != null) {
+            out.append("&issuer=");
+            encode(issuer, out);
+        }
+        if (algorithm != HmacAlgorithm.SHA1) {
+            out.append("&algorithm=").append(algorithm.name());
+        }
+        if (digits != Digits.SIX) {
+            out.append("&digits=").append(Codes.length(digits));
+        }
+        if (period != DEFAULT_PERIOD) {
+            out.append("&period=").append(period);
+        }
+    }
+
+    /**
+     * @param name   Account name
+     * @param secret Base32 encoded shared secret
+     * @param out    Destination buffer, its position is advanced past the URI
+     */
+    public static void write(CharSequence name, CharSequence secret, ByteBuffer out) {
+        write(name, secret, null, HmacAlgorithm.SHA1, Digits.SIX, DEFAULT_PERIOD, out);
+    }
+
+    /**
+     * Writes the URI as US-ASCII bytes, ready for a QR encoder or a socket
+     *
+     * @param name      Account name
+     * @param secret    Base32 encoded shared secret
+     * @param issuer    Provider of the account, or null
+     * @param algorithm HMAC algorithm
+     * @param digits    Length of the codes
+     * @param period    Interval length in seconds
+     * @param out       Destination buffer, its position is advanced past the URI
+     */
+    public static void write(CharSequence name, CharSequence secret, CharSequence issuer, HmacAlgorithm algorithm,
+                             Digits digits, int period, ByteBuffer out) {
+        checkPeriod(period);
+        ascii(PREFIX, out);
+        encode(name, out);
+        ascii(SECRET, out);
+        ascii(secret, out);
+        if (issuer != null) {
+            ascii("&issuer=", out);
+            encode(issuer, out);
+        }
+        if (algorithm != HmacAlgorithm.SHA1) {
+            ascii("&algorithm=", out);
+            ascii(algorithm.name(), out);
+        }
+        if (digits != Digits.SIX) {
+            ascii("&digits=", out);
+            decimal(Codes.length(digits), out);
+        }
+        if (period != DEFAULT_PERIOD) {
+            ascii("&period=", out);
+            decimal(period, out);
+        }
+    }
+
+    private static void checkPeriod(int period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+    }
+
+    private static void encode(CharSequence s, StringBuilder out) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (isUnreserved(c)) {
+                out.append(c);
+            } else if (c == ' ') {
+                out.append('+');
+            } else {
+                int codePoint = codePoint(s, i);
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    i++;
+                }
+                int length = utf8Length(codePoint);
+                for (int j = 0; j < length; j++) {
+                    int b = utf8Byte(codePoint, length, j);
+                    out.append('%').append(HEX[b >>> 4]).append(HEX[b & 0xf]);
+                }
+            }
+        }
+    }
+
+    private static void encode(CharSequence s, ByteBuffer out) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (isUnreserved(c)) {
+                out.put((byte) c);
+            } else if (c == ' ') {
+                out.put((byte) '+');
+            } else {
+                int codePoint = codePoint(s, i);
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    i++;
+                }
+                int length = utf8Length(codePoint);
+                for (int j = 0; j < length; j++) {
+                    int b = utf8Byte(codePoint, length, j);
+                    out.put((byte) '%').put((byte) HEX[b >>> 4]).put((byte) HEX[b & 0xf]);
+                }
+            }
+        }
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+    /**
+     * @return Code point at the index, '?' for an unpaired surrogate as the UTF-8 encoder of String replaces them
+     */
+    private static int codePoint(CharSequence s, int index) {
+        char c = s.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < s.length() && Character.isLowSurrogate(s.charAt(index + 1))) {
+            return Character.toCodePoint(c, s.charAt(index + 1));
+        }
+        return Character.isSurrogate(c) ? '?' : c;
+    }
+
+    private static int utf8Length(int codePoint) {
+        return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+    }
+
+    private static int utf8Byte(int codePoint, int length, int index) {
+        if (length == 1) {
+            return codePoint;
+        }
+        int shift = 6 * (length - 1 - index);
+        if (index == 0) {
+            return (0xf00 >> length) & 0xff | codePoint >>> shift;
+        }
+        return 0x80 | (codePoint >>> shift) & 0x3f;
+    }
+
+    private static void ascii(CharSequence s, ByteBuffer out) {
+        for (int i = 0; i < s.length(); i++) {
+            out.put((byte) s.charAt(i));
+        }
+    }
+
+    private static void decimal(int value, ByteBuffer out) {
+        int divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+}
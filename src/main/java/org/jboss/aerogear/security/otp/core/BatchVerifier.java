@@ -0,0 +1,87 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+
+/**
+ * Verifies many (secret, code) pairs in one call. The clock is read once per batch and every pair is checked
+ * against the same current interval, using the window of {@link org.jboss.aerogear.security.otp.Totp#verify(String)}:
+ * the current interval and the previous one.
+ */
+public class BatchVerifier {
+
+    private static final int DELAY_WINDOW = 1;
+
+    private final Clock clock;
+    private final WindowVerifier window;
+
+    /**
+     * @param clock Clock responsible for retrieve the current interval
+     */
+    public BatchVerifier(Clock clock) {
+        this.clock = clock;
+        this.window = new WindowVerifier(clock, DELAY_WINDOW, 0);
+    }
+
+    /**
+     * Verifies a batch of timeout codes
+     *
+     * @param secrets Prepared shared secrets
+     * @param codes   Submitted codes, {@code codes[i]} being verified against {@code secrets[i]}
+     * @return Bitmap where bit {@code i} is set when the code {@code i} is valid
+     */
+    public long[] verify(PreparedSecret[] secrets, int[] codes) {
+        long[] results = new long[(secrets.length + 63) >>> 6];
+        verify(secrets, codes, secrets.length, results);
+        return results;
+    }
+
+    /**
+     * Verifies a batch of timeout codes into a caller supplied bitmap
+     *
+     * @param secrets Prepared shared secrets
+     * @param codes   Submitted codes, {@code codes[i]} being verified against {@code secrets[i]}
+     * @param count   Number of pairs to verify, starting from the first one
+     * @param results Bitmap where bit {@code i} is set when the code {@code i} is valid, cleared before use
+     */
+    public void verify(PreparedSecret[] secrets, int[] codes, int count, long[] results) {
+        if (count > secrets.length || count > codes.length || count > (long) results.length << 6) {
+            throw new IllegalArgumentException("Batch of " + count + " pairs does not fit the supplied arrays");
+        }
+        int words = (count + 63) >>> 6;
+        for (int i = 0; i < words; i++) {
+            results[i] = 0L;
+        }
+
+        long currentInterval = clock.getCurrentInterval();
+        for (int i = 0; i < count; i++) {
+            if (window.match(secrets[i], codes[i], currentInterval) != WindowVerifier.NO_MATCH) {
+                results[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * @param results Bitmap filled by one of the verify methods
+     * @param index   Position of the pair in the batch
+     * @return True if the code at the given position is valid
+     */
+    public static boolean isValid(long[] results, int index) {
+        return (results[index >>> 6] & (1L << index)) != 0;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+
+import java.io.Closeable;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Clock publishing the current interval through a volatile field, so that reading it is a plain memory load. The
+ * field is refreshed at each interval boundary by a ticker task; all the cached clocks share a single daemon
+ * scheduler thread. The published value may trail the wall clock by the scheduling latency of the ticker, usually
+ * well under a millisecond.
+ */
+public class CachedClock extends Clock implements Closeable {
+
+    private static final ScheduledExecutorService TICKER = IntervalTicker.scheduler("otp-clock-ticker");
+
+    private final long intervalMillis;
+    private final IntervalTicker ticker;
+    private volatile long currentInterval;
+
+    /**
+     * Cached clock with the default interval of 30 seconds
+     */
+    public CachedClock() {
+        this(30);
+    }
+
+    /**
+     * @param interval Interval length in seconds
+     */
+    public CachedClock(int interval) {
+        super(interval);
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + interval);
+        }
+        this.intervalMillis = interval * 1000L;
+        this.currentInterval = System.currentTimeMillis() / intervalMillis;
+        this.ticker = new IntervalTicker(TICKER, intervalMillis, this::refresh);
+    }
+
+    @Override
+    public long getCurrentInterval() {
+        return currentInterval;
+    }
+
+    /**
+     * Stops the ticker. The clock keeps returning the last published interval afterwards.
+     */
+    @Override
+    public void close() {
+        ticker.close();
+    }
+
+    private void refresh() {
+        currentInterval = System.currentTimeMillis() / intervalMillis;
+    }
+}
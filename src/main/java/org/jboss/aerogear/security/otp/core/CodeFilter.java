@@ -0,0 +1,267 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of the (secret id, code) pairs valid in the current window of a population of secrets, rejecting
+ * most wrong codes before any HMAC. One filter is kept per interval. Each is a blocked filter whose probe bits all
+ * fall in a single 64-bit word, so checking a code costs one memory read per interval of the window. Filters have
+ * no false negatives: a rejected code is certainly wrong, an accepted one still has to be verified.
+ * <p/>
+ * At each interval boundary a ticker task computes the filter of the interval after the current one, one HMAC per
+ * registered secret. The filter pays off when the population receives more wrong codes per interval than it has
+ * secrets, typically under a brute-force flood. Secrets registered after a filter was built are added to it,
+ * unregistered ones stay in it until it expires, which can only cause false positives. Intervals without a filter
+ * let every code through.
+ */
+public class CodeFilter implements Closeable {
+
+    private static final int DELAY_WINDOW = 1;
+    private static final int BITS_PER_SECRET = 16;
+
+    private static final ScheduledExecutorService TICKER = IntervalTicker.scheduler("otp-code-filter");
+
+    private final Clock clock;
+    private final int pastIntervals;
+    private final WindowVerifier window;
+    private final Map<Long, PreparedSecret> secrets = new HashMap<Long, PreparedSecret>();
+    private final Object buildLock = new Object();
+    private final IntervalTicker ticker;
+    private volatile Filter[] ring;
+    private List<Long> pending;
+
+    /**
+     * Filter covering the window of {@link org.jboss.aerogear.security.otp.Totp#verify(String)} with the default
+     * interval of 30 seconds
+     *
+     * @param clock Clock responsible for retrieve the current interval
+     */
+    public CodeFilter(Clock clock) {
+        this(clock, 30, DELAY_WINDOW);
+    }
+
+    /**
+     * @param clock         Clock responsible for retrieve the current interval
+     * @param period        Interval length of the clock in seconds, used to schedule the ticker
+     * @param pastIntervals Number of past intervals accepted
+     */
+    public CodeFilter(Clock clock, int period, int pastIntervals) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        if (pastIntervals < 0) {
+            throw new IllegalArgumentException("Past intervals must not be negative: " + pastIntervals);
+        }
+        this.clock = clock;
+        this.pastIntervals = pastIntervals;
+        this.window = new WindowVerifier(clock, pastIntervals, 0);
+        this.ring = new Filter[pastIntervals + 2];
+        this.ticker = new IntervalTicker(TICKER, period * 1000L, this::refresh);
+    }
+
+    /**
+     * Adds a secret to the population or replaces it
+     *
+     * @param secretId Identifier of the shared secret
+     * @param secret   Prepared shared secret
+     */
+    public void register(long secretId, PreparedSecret secret) {
+        synchronized (secrets) {
+            secrets.put(secretId, secret);
+            for (Filter filter : ring) {
+                if (filter != null) {
+                    filter.add(secretId, secret.code(filter.interval));
+                }
+            }
+            if (pending != null) {
+                pending.add(secretId);
+            }
+        }
+    }
+
+    /**
+     * @param secretId Identifier of the shared secret
+     * @return True if the secret was removed
+     */
+    public boolean unregister(long secretId) {
+        synchronized (secrets) {
+            return secrets.remove(secretId) != null;
+        }
+    }
+
+    /**
+     * @param secretId Identifier of the shared secret
+     * @param code     Submitted code
+     * @return False if the code is certainly not valid within the window, true if it may be
+     */
+    public boolean mightBeValid(long secretId, int code) {
+        return mightBeValid(secretId, code, clock.getCurrentInterval());
+    }
+
+    /**
+     * Verifies a timeout code, computing HMACs only for codes that pass the filter
+     *
+     * @param secretId Identifier of the shared secret
+     * @param secret   Prepared shared secret
+     * @param code     Submitted code
+     * @return True if the code is valid within the window
+     */
+    public boolean verify(long secretId, PreparedSecret secret, int code) {
+        // A single read, so that the filter and the HMACs check the same window across a boundary
+        long currentInterval = clock.getCurrentInterval();
+        if (!mightBeValid(secretId, code, currentInterval)) {
+            return false;
+        }
+        return window.match(secret, code, currentInterval) != WindowVerifier.NO_MATCH;
+    }
+
+    private boolean mightBeValid(long secretId, int code, long currentInterval) {
+        Filter[] ring = this.ring;
+        for (long interval = currentInterval - pastIntervals; interval <= currentInterval; interval++) {
+            Filter filter = ring[slot(interval)];
+            if (filter == null || filter.interval != interval || filter.mightContain(secretId, code)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the filter of an interval unless one is already held. Called by the ticker for the interval after
+     * the current one, callers should use it to fill the current window when the population is first loaded.
+     *
+     * @param interval Interval to filter
+     */
+    public void build(long interval) {
+        synchronized (buildLock) {
+            long[] secretIds;
+            PreparedSecret[] prepared;
+            synchronized (secrets) {
+                Filter filter = ring[slot(interval)];
+                if (filter != null && filter.interval == interval) {
+                    return;
+                }
+                secretIds = new long[secrets.size()];
+                prepared = new PreparedSecret[secretIds.length];
+                int i = 0;
+                for (Map.Entry<Long, PreparedSecret> entry : secrets.entrySet()) {
+                    secretIds[i] = entry.getKey();
+                    prepared[i++] = entry.getValue();
+                }
+                pending = new ArrayList<Long>();
+            }
+
+            Filter filter = new Filter(interval, secretIds.length);
+            boolean complete = false;
+            try {
+                for (int i = 0; i < secretIds.length; i++) {
+                    filter.add(secretIds[i], prepared[i].code(interval));
+                }
+                complete = true;
+            } finally {
+                synchronized (secrets) {
+                    if (complete) {
+                        // Secrets registered while the filter was computed are added before publishing it
+                        for (Long secretId : pending) {
+                            PreparedSecret secret = secrets.get(secretId);
+                            if (secret != null) {
+                                filter.add(secretId, secret.code(interval));
+                            }
+                        }
+                        Filter[] published = ring.clone();
+                        published[slot(interval)] = filter;
+                        ring = published;
+                    }
+                    pending = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the ticker. Once the held filters expire every code is let through, unless {@link #build(long)} is
+     * called.
+     */
+    @Override
+    public void close() {
+        ticker.close();
+    }
+
+    private int slot(long interval) {
+        return (int) Math.floorMod(interval, (long) ring.length);
+    }
+
+    private void refresh() {
+        build(clock.getCurrentInterval() + 1);
+    }
+
+    /**
+     * Blocked bloom filter of one interval. Three probe bits are drawn from the hash of the pair, all within the
+     * 64-bit word selected by the high bits of the same hash.
+     */
+    private static final class Filter {
+
+        final long interval;
+        private final AtomicLongArray words;
+        private final int mask;
+
+        Filter(long interval, int expectedSecrets) {
+            this.interval = interval;
+            long bits = Math.max(64L, (long) expectedSecrets * BITS_PER_SECRET);
+            int length = (int) Math.min(1 << 30, Long.highestOneBit(bits - 1) >>> 5);
+            this.words = new AtomicLongArray(length);
+            this.mask = length - 1;
+        }
+
+        void add(long secretId, int code) {
+            long hash = hash(secretId, code);
+            int index = (int) (hash >>> 32) & mask;
+            long bits = probes(hash);
+            long word;
+            do {
+                word = words.get(index);
+            } while ((word & bits) != bits && !words.compareAndSet(index, word, word | bits));
+        }
+
+        boolean mightContain(long secretId, int code) {
+            long hash = hash(secretId, code);
+            long bits = probes(hash);
+            return (words.get((int) (hash >>> 32) & mask) & bits) == bits;
+        }
+
+        private static long probes(long hash) {
+            return 1L << hash | 1L << (hash >>> 6) | 1L << (hash >>> 12);
+        }
+
+        private static long hash(long secretId, int code) {
+            long h = (secretId ^ ((long) code << 32 | code & 0xffffffffL)) * 0x9e3779b97f4a7c15L;
+            h ^= h >>> 31;
+            h *= 0xbf58476d1ce4e5b9L;
+            return h ^ (h >>> 29);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Inverted index from codes to the users holding them, for submissions that carry a code but no user id. The codes
+ * of every registered user are computed once per interval into a table mapping each code to its users, so resolving
+ * a submission is a hash lookup instead of one HMAC per candidate.
+ * <p/>
+ * The tables form a ring covering the verification window plus the next interval. At each interval boundary a
+ * ticker task computes the table of the interval after the current one, so the index is ready before the clock
+ * reaches it and only one interval is computed per tick. Registrations update the tables in place. A table missing
+ * when a lookup needs it, e.g. because the ticker lags behind, is computed on the calling thread.
+ */
+public class CodeIndex implements Closeable {
+
+    private static final int DELAY_WINDOW = 1;
+
+    private static final ScheduledExecutorService TICKER = IntervalTicker.scheduler("otp-code-index");
+
+    private static final long[] NO_USERS = new long[0];
+
+    private final Clock clock;
+    private final int pastIntervals;
+    private final Table[] ring;
+    private final Map<Long, PreparedSecret> secrets = new HashMap<Long, PreparedSecret>();
+    private final StampedLock lock = new StampedLock();
+    private final Object buildLock = new Object();
+    private final IntervalTicker ticker;
+    private List<Mutation> pending;
+
+    /**
+     * Index covering the window of {@link org.jboss.aerogear.security.otp.Totp#verify(String)} with the default
+     * interval of 30 seconds
+     *
+     * @param clock Clock responsible for retrieve the current interval
+     */
+    public CodeIndex(Clock clock) {
+        this(clock, 30, DELAY_WINDOW);
+    }
+
+    /**
+     * @param clock         Clock responsible for retrieve the current interval
+     * @param period        Interval length of the clock in seconds, used to schedule the ticker
+     * @param pastIntervals Number of past intervals accepted
+     */
+    public CodeIndex(Clock clock, int period, int pastIntervals) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        if (pastIntervals < 0) {
+            throw new IllegalArgumentException("Past intervals must not be negative: " + pastIntervals);
+        }
+        this.clock = clock;
+        this.pastIntervals = pastIntervals;
+        this.ring = new Table[pastIntervals + 2];
+        this.ticker = new IntervalTicker(TICKER, period * 1000L, this::refresh);
+    }
+
+    /**
+     * Adds a user to the index or replaces its secret
+     *
+     * @param userId User id
+     * @param secret Prepared shared secret
+     */
+    public void register(long userId, PreparedSecret secret) {
+        update(userId, secret);
+    }
+
+    /**
+     * @param userId User id
+     * @return True if the user was removed
+     */
+    public boolean unregister(long userId) {
+        return update(userId, null) != null;
+    }
+
+    /**
+     * @return Number of registered users
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return secrets.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param code Submitted code
+     * @return Ids of the users for which the code is valid within the window, in no particular order
+     */
+    public long[] candidates(int code) {
+        return candidates(code, null);
+    }
+
+    /**
+     * @param code Submitted code
+     * @param hint Filter narrowing the candidates, e.g. to the accounts matching a hint of the submission, or null
+     * @return Ids of the accepted users for which the code is valid within the window, in no particular order
+     */
+    public long[] candidates(int code, LongPredicate hint) {
+        long currentInterval = clock.getCurrentInterval();
+        while (true) {
+            long stamp = lock.readLock();
+            long missing = Long.MIN_VALUE;
+            long[] found = NO_USERS;
+            int count = 0;
+            try {
+                for (long interval = currentInterval - pastIntervals; interval <= currentInterval; interval++) {
+                    Table table = ring[slot(interval)];
+                    if (table == null || table.interval != interval) {
+                        missing = interval;
+                        break;
+                    }
+                    for (int entry = table.head(code); entry != 0; entry = table.next[entry]) {
+                        long userId = table.userIds[entry];
+                        if (table.codes[entry] != code || contains(found, count, userId)
+                                || (hint != null && !hint.test(userId))) {
+                            continue;
+                        }
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, Math.max(4, count << 1));
+                        }
+                        found[count++] = userId;
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            if (missing == Long.MIN_VALUE) {
+                return count == found.length ? found : Arrays.copyOf(found, count);
+            }
+            build(missing);
+        }
+    }
+
+    /**
+     * Computes the table of an interval unless the index already holds it. Called by the ticker for the interval
+     * after the current one, callers may use it to warm the index up.
+     *
+     * @param interval Interval to index
+     */
+    public void build(long interval) {
+        synchronized (buildLock) {
+            long[] userIds;
+            PreparedSecret[] prepared;
+            long stamp = lock.writeLock();
+            try {
+                Table table = ring[slot(interval)];
+                if (table != null && table.interval == interval) {
+                    return;
+                }
+                userIds = new long[secrets.size()];
+                prepared = new PreparedSecret[userIds.length];
+                int i = 0;
+                for (Map.Entry<Long, PreparedSecret> entry : secrets.entrySet()) {
+                    userIds[i] = entry.getKey();
+                    prepared[i++] = entry.getValue();
+                }
+                pending = new ArrayList<Mutation>();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+
+            Table table = new Table(interval, userIds.length);
+            boolean complete = false;
+            try {
+                for (int i = 0; i < userIds.length; i++) {
+                    table.add(prepared[i].code(interval), userIds[i]);
+                }
+                complete = true;
+            } finally {
+                stamp = lock.writeLock();
+                try {
+                    if (complete) {
+                        // Registrations made while the table was computed are replayed before publishing it
+                        for (Mutation mutation : pending) {
+                            mutation.apply(table);
+                        }
+                        ring[slot(interval)] = table;
+                    }
+                    pending = null;
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the ticker. Lookups keep working afterwards, computing the tables on the calling thread.
+     */
+    @Override
+    public void close() {
+        ticker.close();
+    }
+
+    private PreparedSecret update(long userId, PreparedSecret secret) {
+        long stamp = lock.writeLock();
+        try {
+            PreparedSecret previous = secret == null ? secrets.remove(userId) : secrets.put(userId, secret);
+            if (previous == null && secret == null) {
+                return null;
+            }
+            Mutation mutation = new Mutation(userId, previous, secret);
+            for (Table table : ring) {
+                if (table != null) {
+                    mutation.apply(table);
+                }
+            }
+            if (pending != null) {
+                pending.add(mutation);
+            }
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int slot(long interval) {
+        return (int) Math.floorMod(interval, (long) ring.length);
+    }
+
+    private void refresh() {
+        build(clock.getCurrentInterval() + 1);
+    }
+
+    private static boolean contains(long[] values, int count, long value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Change of the secret of one user, null standing for no secret
+     */
+    private static final class Mutation {
+
+        final long userId;
+        final PreparedSecret previous;
+        final PreparedSecret secret;
+
+        Mutation(long userId, PreparedSecret previous, PreparedSecret secret) {
+            this.userId = userId;
+            this.previous = previous;
+            this.secret = secret;
+        }
+
+        void apply(Table table) {
+            if (previous != null) {
+                table.remove(previous.code(table.interval), userId);
+            }
+            if (secret != null) {
+                table.add(secret.code(table.interval), userId);
+            }
+        }
+    }
+
+    /**
+     * Codes of one interval, chained by code hash. Entries are numbered from 1, 0 ending a chain, and the slots of
+     * removed entries are reused.
+     */
+    private static final class Table {
+
+        final long interval;
+        int[] heads;
+        int[] codes;
+        long[] userIds;
+        int[] next;
+        private int size;
+        private int free;
+
+        Table(long interval, int expectedUsers) {
+            this.interval = interval;
+            int capacity = Integer.highestOneBit(Math.max(8, expectedUsers) - 1) << 1;
+            heads = new int[capacity];
+            codes = new int[capacity + 1];
+            userIds = new long[capacity + 1];
+            next = new int[capacity + 1];
+        }
+
+        int head(int code) {
+            return heads[hash(code) & (heads.length - 1)];
+        }
+
+        void add(int code, long userId) {
+            int entry;
+            if (free != 0) {
+                entry = free;
+                free = next[entry];
+            } else {
+                if (size + 1 == codes.length) {
+                    grow();
+                }
+                entry = ++size;
+            }
+            int bucket = hash(code) & (heads.length - 1);
+            codes[entry] = code;
+            userIds[entry] = userId;
+            next[entry] = heads[bucket];
+            heads[bucket] = entry;
+        }
+
+        void remove(int code, long userId) {
+            int bucket = hash(code) & (heads.length - 1);
+            for (int entry = heads[bucket], previous = 0; entry != 0; previous = entry, entry = next[entry]) {
+                if (codes[entry] == code && userIds[entry] == userId) {
+                    if (previous == 0) {
+                        heads[bucket] = next[entry];
+                    } else {
+                        next[previous] = next[entry];
+                    }
+                    next[entry] = free;
+                    free = entry;
+                    return;
+                }
+            }
+        }
+
+        private void grow() {
+            int capacity = heads.length << 1;
+            codes = Arrays.copyOf(codes, capacity + 1);
+            userIds = Arrays.copyOf(userIds, capacity + 1);
+            next = Arrays.copyOf(next, capacity + 1);
+            // Free entries are never chained from a bucket, so rehashing the chains leaves the free list intact
+            int[] oldHeads = heads;
+            heads = new int[capacity];
+            for (int bucket = 0; bucket < oldHeads.length; bucket++) {
+                for (int entry = oldHeads[bucket], following; entry != 0; entry = following) {
+                    following = next[entry];
+                    int target = hash(codes[entry]) & (capacity - 1);
+                    next[entry] = heads[target];
+                    heads[target] = entry;
+                }
+            }
+        }
+
+        private static int hash(int code) {
+            int h = code * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+
+/**
+ * Parsing and comparison of submitted codes in time independent of their digits. PasscodeGenerator compares codes
+ * as Strings, and String.equals returns on the first differing character, which tells an attacker how many leading
+ * digits were right. Here a code is parsed once into an int, without exceptions, and compared without branching on
+ * its value.
+ */
+public final class Codes {
+
+    /**
+     * Parsed value of a malformed code. Codes are never negative, so it matches none.
+     */
+    public static final int INVALID = -1;
+
+    private Codes() {
+    }
+
+    /**
+     * Parses a code of exactly as many ASCII digits as the codes of the secret, leading zeros included. Every
+     * character is read whatever the previous ones were.
+     *
+     * @param code   Submitted code
+     * @param digits Length of the codes
+     * @return Value of the code, or {@link #INVALID} if it is null, of another length or not only digits
+     */
+    public static int parse(CharSequence code, Digits digits) {
+        if (code == null || code.length() != length(digits)) {
+            return INVALID;
+        }
+        int value = 0;
+        int invalid = 0;
+        for (int i = 0; i < code.length(); i++) {
+            int digit = code.charAt(i) - '0';
+            // Sign bit set for anything below '0' or above '9'
+            invalid |= digit | (9 - digit);
+            value = value * 10 + digit;
+        }
+        return invalid < 0 ? INVALID : value;
+    }
+
+    /**
+     * @param a Code
+     * @param b Code
+     * @return True if both codes are equal
+     */
+    public static boolean equal(int a, int b) {
+        int difference = a ^ b;
+        return ((difference | -difference) >>> 31) == 0;
+    }
+
+    /**
+     * Looks a code up among computed codes, always scanning all of them
+     *
+     * @param codes Computed codes
+     * @param code  Submitted code
+     * @return Index of the first equal code, or -1
+     */
+    public static int indexOf(int[] codes, int code) {
+        int index = -1;
+        for (int i = codes.length - 1; i >= 0; i--) {
+            int difference = codes[i] ^ code;
+            // -1 when the codes differ, 0 when they are equal
+            int miss = (difference | -difference) >> 31;
+            index = (index & miss) | (i & ~miss);
+        }
+        return index;
+    }
+
+    /**
+     * @param digits Length of the codes
+     * @return Number of decimal digits of the codes
+     */
+    public static int length(Digits digits) {
+        int length = 0;
+        for (int value = digits.getValue(); value > 1; value /= 10) {
+            length++;
+        }
+        return length;
+    }
+}
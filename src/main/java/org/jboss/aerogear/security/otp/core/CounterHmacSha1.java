@@ -0,0 +1,91 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+/**
+ * HMAC-SHA1 restricted to the 8-byte big-endian counters of HOTP and TOTP, computed by {@link Sha1Kernel} from the
+ * precomputed pad states. It can stand in for a general purpose Mac wherever only counters are signed, such as a
+ * PasscodeGenerator signer. Instances are immutable and can be shared.
+ */
+public final class CounterHmacSha1 {
+
+    /**
+     * Length of the MAC in bytes
+     */
+    public static final int MAC_LENGTH = Sha1.DIGEST_LENGTH;
+
+    private static final int INNER_PAD = 0x36363636;
+    private static final int OUTER_PAD = 0x5c5c5c5c;
+
+    private final int[] innerState = new int[5];
+    private final int[] outerState = new int[5];
+
+    /**
+     * @param key Raw shared secret
+     */
+    public CounterHmacSha1(byte[] key) {
+        int[] block = Sha1.keyBlock(key);
+        int[] w = new int[80];
+        for (int i = 0; i < 16; i++) {
+            w[i] = block[i] ^ INNER_PAD;
+        }
+        Sha1.reset(innerState);
+        Sha1.compress(innerState, w);
+        for (int i = 0; i < 16; i++) {
+            w[i] = block[i] ^ OUTER_PAD;
+        }
+        Sha1.reset(outerState);
+        Sha1.compress(outerState, w);
+    }
+
+    /**
+     * @param counter Interval or counter
+     * @return MAC of the counter
+     */
+    public byte[] mac(long counter) {
+        byte[] mac = new byte[MAC_LENGTH];
+        mac(counter, mac, 0);
+        return mac;
+    }
+
+    /**
+     * Writes the MAC into a caller supplied array
+     *
+     * @param counter Interval or counter
+     * @param out     Destination array
+     * @param offset  Position of the first MAC byte in the destination
+     */
+    public void mac(long counter, byte[] out, int offset) {
+        int[] digest = Scratch.get().state;
+        Sha1Kernel.inner(innerState, counter, digest);
+        Sha1Kernel.outer(outerState, digest);
+        for (int i = 0; i < 5; i++) {
+            Words.fromInt(digest[i], out, offset + 4 * i);
+        }
+    }
+
+    /**
+     * @param message Big-endian counter
+     * @return MAC of the counter
+     */
+    public byte[] sign(byte[] message) {
+        if (message.length != 8) {
+            throw new IllegalArgumentException("Messages must be 8 bytes long: " + message.length);
+        }
+        return mac(Words.toLong(message, 0));
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+/**
+ * Storage of the HOTP moving factors, one per token.
+ */
+public interface CounterStore {
+
+    /**
+     * @param tokenId Identifier of the token
+     * @return Next counter expected from the token, 0 for an unknown token
+     */
+    long get(long tokenId);
+
+    /**
+     * Moves the counter of a token forward, provided nobody moved it in the meantime
+     *
+     * @param tokenId  Identifier of the token
+     * @param expected Counter read beforehand
+     * @param next     New counter, greater than the expected one
+     * @return True if the counter was moved, false if it no longer matched the expected value
+     */
+    boolean advance(long tokenId, long expected, long next);
+}
@@ -0,0 +1,274 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+
+/**
+ * Verifier learning the clock drift of each user. Every successful verification records the offset at which the
+ * code matched; once a user matched twice in a row around the same offset, the window shrinks to that offset and
+ * the one before it, which still absorbs the delay between reading a code and submitting it. A valid code then
+ * costs one HMAC and a wrong one two, whatever the drift of the phone.
+ * <p/>
+ * Users without a settled drift get the full window of {@code maxDrift} intervals on both sides, tried from the
+ * current interval outwards. A miss in the narrow window unsettles the user, so a phone whose clock moved again is
+ * searched with the full window on its next attempt.
+ * <p/>
+ * The drift of a user is a single short, centre offset and confidence, held in open addressing tables of primitives
+ * spread over independently locked stripes. HMACs are computed outside of the locks.
+ */
+public class DriftTracker {
+
+    private static final int DEFAULT_MAX_DRIFT = 2;
+    private static final int DEFAULT_EXPECTED_USERS = 1 << 16;
+    private static final int CONFIDENT = 2;
+
+    private final Clock clock;
+    private final int maxDrift;
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    /**
+     * Tracker accepting up to two intervals of drift on each side
+     *
+     * @param clock Clock responsible for retrieve the current interval
+     */
+    public DriftTracker(Clock clock) {
+        this(clock, DEFAULT_MAX_DRIFT, DEFAULT_EXPECTED_USERS);
+    }
+
+    /**
+     * @param clock         Clock responsible for retrieve the current interval
+     * @param maxDrift      Largest offset accepted on each side of the current interval, at most 100
+     * @param expectedUsers Expected number of tracked users, used for sizing
+     */
+    public DriftTracker(Clock clock, int maxDrift, int expectedUsers) {
+        if (maxDrift < 0 || maxDrift > 100) {
+            throw new IllegalArgumentException("Max drift out of range: " + maxDrift);
+        }
+        this.clock = clock;
+        this.maxDrift = maxDrift;
+
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+        long perStripe = Math.min(1L << 29, Math.max(8L, 2L * expectedUsers / stripeCount));
+        int capacity = Integer.highestOneBit((int) perStripe) << 1;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    /**
+     * @param userId User id
+     * @param secret Prepared shared secret of the user
+     * @param code   Submitted code
+     * @return True if the code is valid within the window of the user
+     */
+    public boolean verify(long userId, PreparedSecret secret, int code) {
+        return offset(userId, secret, code) != WindowVerifier.NO_MATCH;
+    }
+
+    /**
+     * Verifies a code and updates the drift of the user
+     *
+     * @param userId User id
+     * @param secret Prepared shared secret of the user
+     * @param code   Submitted code
+     * @return Offset of the matching interval relative to the current one, or {@link WindowVerifier#NO_MATCH}
+     */
+    public int offset(long userId, PreparedSecret secret, int code) {
+        long hash = mix(userId);
+        Stripe stripe = stripes[(int) (hash >>> stripeShift)];
+        short state = stripe.get(userId, hash);
+        long currentInterval = clock.getCurrentInterval();
+
+        if (confidence(state) >= CONFIDENT) {
+            int centre = centre(state);
+            for (int offset = centre; offset >= Math.max(-maxDrift, centre - 1); offset--) {
+                if (Codes.equal(secret.code(currentInterval + offset), code)) {
+                    stripe.matched(userId, hash, offset, true);
+                    return offset;
+                }
+            }
+            stripe.missed(userId, hash);
+            return WindowVerifier.NO_MATCH;
+        }
+
+        for (int i = 0; i <= 2 * maxDrift; i++) {
+            // 0, -1, 1, -2, 2... the past first, as PasscodeGenerator.verifyTimeoutCode does
+            int offset = (i & 1) == 0 ? i >>> 1 : -((i + 1) >>> 1);
+            if (Codes.equal(secret.code(currentInterval + offset), code)) {
+                stripe.matched(userId, hash, offset, false);
+                return offset;
+            }
+        }
+        return WindowVerifier.NO_MATCH;
+    }
+
+    /**
+     * @param userId User id
+     * @return Estimated drift of the user in intervals, 0 if unknown
+     */
+    public int drift(long userId) {
+        long hash = mix(userId);
+        return centre(stripes[(int) (hash >>> stripeShift)].get(userId, hash));
+    }
+
+    /**
+     * @param userId User id
+     * @return True if the user is verified with the narrow window
+     */
+    public boolean isSettled(long userId) {
+        long hash = mix(userId);
+        return confidence(stripes[(int) (hash >>> stripeShift)].get(userId, hash)) >= CONFIDENT;
+    }
+
+    /**
+     * @param userId User id
+     * @return True if a drift was recorded for the user
+     */
+    public boolean forget(long userId) {
+        long hash = mix(userId);
+        return stripes[(int) (hash >>> stripeShift)].remove(userId, hash);
+    }
+
+    private static int centre(short state) {
+        return (byte) (state >> 8);
+    }
+
+    private static int confidence(short state) {
+        return state & 0xff;
+    }
+
+    private static short state(int centre, int confidence) {
+        return (short) (centre << 8 | confidence);
+    }
+
+    private static long mix(long id) {
+        long h = id * 0x9e3779b97f4a7c15L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Open addressing table from user ids to drift states. A state of 0 marks an empty slot, stored states always
+     * have a confidence of at least 1.
+     */
+    private static final class Stripe {
+
+        private long[] keys;
+        private short[] states;
+        private int size;
+
+        Stripe(int capacity) {
+            keys = new long[capacity];
+            states = new short[capacity];
+        }
+
+        synchronized short get(long id, long hash) {
+            int mask = keys.length - 1;
+            for (int slot = (int) hash & mask; states[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == id) {
+                    return states[slot];
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @param narrow True if the code matched within the narrow window of a settled user
+         */
+        synchronized void matched(long id, long hash, int offset, boolean narrow) {
+            int slot = slot(id, hash);
+            short state = states[slot];
+            int centre = centre(state);
+            int confidence = confidence(state);
+            if (state != 0 && (offset == centre || (narrow && offset == centre - 1))) {
+                // A match just behind the centre is a late submission rather than a drift
+                confidence = Math.min(CONFIDENT, offset == centre ? confidence + 1 : confidence);
+            } else {
+                centre = offset;
+                confidence = 1;
+            }
+            keys[slot] = id;
+            states[slot] = state(centre, confidence);
+            if (state == 0 && ++size * 2 > keys.length) {
+                grow();
+            }
+        }
+
+        synchronized void missed(long id, long hash) {
+            int mask = keys.length - 1;
+            for (int slot = (int) hash & mask; states[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == id) {
+                    states[slot] = state(centre(states[slot]), 1);
+                    return;
+                }
+            }
+        }
+
+        synchronized boolean remove(long id, long hash) {
+            int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            while (states[slot] != 0 && keys[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (states[slot] == 0) {
+                return false;
+            }
+            // Backward shift deletion keeps the probe sequences intact without tombstones
+            for (int next = (slot + 1) & mask; states[next] != 0; next = (next + 1) & mask) {
+                int home = (int) mix(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    keys[slot] = keys[next];
+                    states[slot] = states[next];
+                    slot = next;
+                }
+            }
+            states[slot] = 0;
+            size--;
+            return true;
+        }
+
+        private int slot(long id, long hash) {
+            int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            while (states[slot] != 0 && keys[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            short[] oldStates = states;
+            keys = new long[oldKeys.length << 1];
+            states = new short[oldKeys.length << 1];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldStates[i] != 0) {
+                    int slot = (int) mix(oldKeys[i]) & mask;
+                    while (states[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    states[slot] = oldStates[i];
+                }
+            }
+        }
+    }
+}
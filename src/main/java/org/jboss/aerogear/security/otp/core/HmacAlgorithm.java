@@ -0,0 +1,38 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+/**
+ * HMAC algorithms allowed by RFC 6238. The names are the ones expected by the otpauth URI algorithm parameter.
+ */
+public enum HmacAlgorithm {
+
+    SHA1("HmacSHA1"), SHA256("HmacSHA256"), SHA512("HmacSHA512");
+
+    private final String macName;
+
+    HmacAlgorithm(String macName) {
+        this.macName = macName;
+    }
+
+    /**
+     * @return Standard JCA name of the MAC
+     */
+    public String getMacName() {
+        return macName;
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+/**
+ * Counter based verifier (RFC 4226). A code is accepted when it matches one of the next counters of the token,
+ * within a look-ahead window that absorbs the codes generated on the token but never submitted. Accepting a code
+ * moves the stored counter past it, so each code can only be used once.
+ */
+public class HotpVerifier {
+
+    private static final int DEFAULT_LOOK_AHEAD = 10;
+
+    private final CounterStore store;
+    private final int lookAhead;
+
+    /**
+     * @param store Counter storage
+     */
+    public HotpVerifier(CounterStore store) {
+        this(store, DEFAULT_LOOK_AHEAD);
+    }
+
+    /**
+     * @param store     Counter storage
+     * @param lookAhead Number of counters checked past the expected one
+     */
+    public HotpVerifier(CounterStore store, int lookAhead) {
+        if (lookAhead < 0) {
+            throw new IllegalArgumentException("Look-ahead must not be negative: " + lookAhead);
+        }
+        this.store = store;
+        this.lookAhead = lookAhead;
+    }
+
+    /**
+     * Verifies a code and consumes it
+     *
+     * @param tokenId Identifier of the token
+     * @param secret  Prepared shared secret of the token
+     * @param code    Submitted code
+     * @return True if the code is valid
+     */
+    public boolean verify(long tokenId, PreparedSecret secret, int code) {
+        while (true) {
+            long counter = store.get(tokenId);
+            long match = find(secret, code, counter, lookAhead);
+            if (match < 0) {
+                return false;
+            }
+            if (store.advance(tokenId, counter, match + 1)) {
+                return true;
+            }
+            // Another verification moved the counter meanwhile, look again from the new position
+        }
+    }
+
+    /**
+     * Resynchronizes a token that drifted past the look-ahead window (RFC 4226 section 7.4): two consecutive codes
+     * must be found within the larger resynchronization window.
+     *
+     * @param tokenId      Identifier of the token
+     * @param secret       Prepared shared secret of the token
+     * @param first        First code generated on the token
+     * @param second       Code generated right after the first one
+     * @param resyncWindow Number of counters searched past the expected one
+     * @return True if the token was resynchronized
+     */
+    public boolean resync(long tokenId, PreparedSecret secret, int first, int second, int resyncWindow) {
+        while (true) {
+            long counter = store.get(tokenId);
+            long match = counter;
+            boolean found = false;
+            while (!found && (match = find(secret, first, match, resyncWindow - (match - counter))) >= 0) {
+                found = secret.code(match + 1) == second;
+                if (!found) {
+                    match++;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+            if (store.advance(tokenId, counter, match + 2)) {
+                return true;
+            }
+        }
+    }
+
+    private static long find(PreparedSecret secret, int code, long from, long window) {
+        for (long i = 0; i <= window; i++) {
+            if (Codes.equal(secret.code(from + i), code)) {
+                return from + i;
+            }
+        }
+        return -1;
+    }
+}
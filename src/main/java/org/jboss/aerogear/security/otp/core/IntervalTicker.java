@@ -0,0 +1,102 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Task run at each boundary of a wall clock interval, rescheduled from the wall clock after each run so that the
+ * delays do not accumulate. A scheduled ticker keeps its task, and whatever the task refers to, reachable until it
+ * is closed.
+ * <p/>
+ * Owners running tasks of very different costs should not share a scheduler, so that e.g. computing the codes of a
+ * large population does not hold back the refresh of a clock.
+ */
+final class IntervalTicker implements Closeable {
+
+    private final ScheduledExecutorService scheduler;
+    private final long periodMillis;
+    private final Runnable task;
+    private ScheduledFuture<?> tick;
+
+    /**
+     * Schedules the first run at the next interval boundary
+     *
+     * @param scheduler    Scheduler running the task, see {@link #scheduler(String)}
+     * @param periodMillis Interval length in milliseconds
+     * @param task         Task to run at each interval boundary
+     */
+    IntervalTicker(ScheduledExecutorService scheduler, long periodMillis, Runnable task) {
+        this.scheduler = scheduler;
+        this.periodMillis = periodMillis;
+        this.task = task;
+        synchronized (this) {
+            schedule(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @param threadName Name of the scheduler thread
+     * @return Scheduler backed by a single daemon thread
+     */
+    static ScheduledExecutorService scheduler(final String threadName) {
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Cancels the next run. A run already started completes.
+     */
+    @Override
+    public synchronized void close() {
+        if (tick != null) {
+            tick.cancel(false);
+            tick = null;
+        }
+    }
+
+    private void schedule(long now) {
+        long delay = (now / periodMillis + 1) * periodMillis - now;
+        tick = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                fire();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void fire() {
+        synchronized (this) {
+            if (tick == null) {
+                return;
+            }
+            schedule(System.currentTimeMillis());
+        }
+        task.run();
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events of the hot path, all in the "AeroGear OTP" category:
+ * <ul>
+ * <li>org.jboss.aerogear.otp.Base32Decode - decoding of a Base32 shared secret</li>
+ * <li>org.jboss.aerogear.otp.SecretPreparation - precomputation of the HMAC pad states</li>
+ * <li>org.jboss.aerogear.otp.CodeComputation - one HMAC and its truncation, disabled by default as it fires for
+ * every interval tried</li>
+ * <li>org.jboss.aerogear.otp.WindowVerification - check of a code against the window</li>
+ * </ul>
+ * Callers check {@link JfrSupport#AVAILABLE} and the enabled flag first, so a disabled event costs a field read and
+ * no allocation. Stack traces are off to keep the events cheap, the durations are what matters.
+ */
+final class JfrEvents {
+
+    private static final EventType DECODE = EventType.getEventType(Base32Decode.class);
+    private static final EventType PREPARATION = EventType.getEventType(SecretPreparation.class);
+    private static final EventType COMPUTATION = EventType.getEventType(CodeComputation.class);
+    private static final EventType VERIFICATION = EventType.getEventType(WindowVerification.class);
+
+    private JfrEvents() {
+    }
+
+    static byte[] decode(String secret) {
+        if (!DECODE.isEnabled()) {
+            return PreparedSecret.decodeBase32(secret);
+        }
+        Base32Decode event = new Base32Decode();
+        event.begin();
+        byte[] key = PreparedSecret.decodeBase32(secret);
+        event.length = secret.length();
+        event.commit();
+        return key;
+    }
+
+    /**
+     * @return Started event to pass to {@link #prepared(Object, HmacAlgorithm, int)}, or null if disabled
+     */
+    static Object beginPreparation() {
+        if (!PREPARATION.isEnabled()) {
+            return null;
+        }
+        SecretPreparation event = new SecretPreparation();
+        event.begin();
+        return event;
+    }
+
+    static void prepared(Object started, HmacAlgorithm algorithm, int keyLength) {
+        SecretPreparation event = (SecretPreparation) started;
+        event.algorithm = algorithm.name();
+        event.keyLength = keyLength;
+        event.commit();
+    }
+
+    static boolean isComputationEnabled() {
+        return COMPUTATION.isEnabled();
+    }
+
+    static int code(PreparedSecret secret, long counter) {
+        CodeComputation event = new CodeComputation();
+        event.begin();
+        int code = secret.compute(counter);
+        event.algorithm = secret.getAlgorithm().name();
+        event.counter = counter;
+        event.commit();
+        return code;
+    }
+
+    static boolean isVerificationEnabled() {
+        return VERIFICATION.isEnabled();
+    }
+
+    /**
+     * @return Started event to pass to {@link #verified(Object, HmacAlgorithm, int, boolean)}
+     */
+    static Object beginVerification() {
+        WindowVerification event = new WindowVerification();
+        event.begin();
+        return event;
+    }
+
+    static void verified(Object started, HmacAlgorithm algorithm, int offset, boolean cached) {
+        WindowVerification event = (WindowVerification) started;
+        event.algorithm = algorithm.name();
+        event.matched = offset != WindowVerifier.NO_MATCH;
+        event.offset = event.matched ? offset : 0;
+        event.cached = cached;
+        event.commit();
+    }
+
+    @Name("org.jboss.aerogear.otp.Base32Decode")
+    @Label("Base32 Decode")
+    @Category("AeroGear OTP")
+    @Description("Decoding of a Base32 encoded shared secret")
+    @StackTrace(false)
+    static final class Base32Decode extends Event {
+
+        @Label("Encoded Length")
+        int length;
+    }
+
+    @Name("org.jboss.aerogear.otp.SecretPreparation")
+    @Label("Secret Preparation")
+    @Category("AeroGear OTP")
+    @Description("Precomputation of the inner and outer HMAC pad states of a shared secret")
+    @StackTrace(false)
+    static final class SecretPreparation extends Event {
+
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Key Length")
+        int keyLength;
+    }
+
+    @Name("org.jboss.aerogear.otp.CodeComputation")
+    @Label("Code Computation")
+    @Category("AeroGear OTP")
+    @Description("HMAC of one interval or counter and its truncation to a code")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class CodeComputation extends Event {
+
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Counter")
+        long counter;
+    }
+
+    @Name("org.jboss.aerogear.otp.WindowVerification")
+    @Label("Window Verification")
+    @Category("AeroGear OTP")
+    @Description("Check of a submitted code against the intervals of the verification window")
+    @StackTrace(false)
+    static final class WindowVerification extends Event {
+
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Matched")
+        boolean matched;
+
+        @Label("Window Offset")
+        @Description("Offset of the matching interval relative to the current one, 0 when nothing matched")
+        int offset;
+
+        @Label("Cached Window")
+        boolean cached;
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reusable JCA {@link Mac} instances of one key, for a generator shared by many threads. GoogleAuthenticator builds
+ * and keys a new Mac for every pin, and a single shared Mac has to be locked. Here each Mac comes with its own
+ * message and digest buffers, so a code costs no allocation once the pool is warm. Three strategies:
+ * <ul>
+ * <li>{@link #threadLocal} - one Mac per thread, the cheapest lookup, but each virtual thread keys a Mac of its own</li>
+ * <li>{@link #perCarrier} - a striped pool with a few slots per core: compute-only virtual threads never outnumber
+ * their carriers, so the slots are enough whatever the number of virtual threads</li>
+ * <li>{@link #striped} - slots taken and returned with a compare-and-set, the thread id picking the first slot
+ * tried</li>
+ * </ul>
+ * Neither locks nor parks, so virtual threads are never pinned. When every slot is taken a Mac is created for the
+ * call and dropped afterwards, rather than waited for.
+ */
+public abstract class MacPool {
+
+    private final byte[] key;
+    private final HmacAlgorithm algorithm;
+    private final int modulo;
+
+    MacPool(byte[] key, HmacAlgorithm algorithm, Digits digits) {
+        this.key = key.clone();
+        this.algorithm = algorithm;
+        this.modulo = digits.getValue();
+        // Fails fast on an unusable key rather than on the first code
+        newLease();
+    }
+
+    /**
+     * @param key       Raw shared secret
+     * @param algorithm HMAC algorithm
+     * @param digits    Length of the codes
+     * @return Pool keeping one Mac per thread
+     */
+    public static MacPool threadLocal(byte[] key, HmacAlgorithm algorithm, Digits digits) {
+        return new ThreadLocalPool(key, algorithm, digits);
+    }
+
+    /**
+     * @param key       Raw shared secret
+     * @param algorithm HMAC algorithm
+     * @param digits    Length of the codes
+     * @return Striped pool of two slots per available processor
+     */
+    public static MacPool perCarrier(byte[] key, HmacAlgorithm algorithm, Digits digits) {
+        return new StripedPool(key, algorithm, digits, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param key       Raw shared secret
+     * @param algorithm HMAC algorithm
+     * @param digits    Length of the codes
+     * @param stripes   Number of pooled Macs, rounded up to a power of two
+     * @return Striped pool
+     */
+    public static MacPool striped(byte[] key, HmacAlgorithm algorithm, Digits digits, int stripes) {
+        return new StripedPool(key, algorithm, digits, stripes);
+    }
+
+    /**
+     * @param counter Interval or counter
+     * @return Truncated code
+     */
+    public int code(long counter) {
+        Lease lease = acquire();
+        try {
+            return lease.code(counter, modulo);
+        } finally {
+            release(lease);
+        }
+    }
+
+    abstract Lease acquire();
+
+    abstract void release(Lease lease);
+
+    final Lease newLease() {
+        try {
+            Mac mac = Mac.getInstance(algorithm.getMacName());
+            mac.init(new SecretKeySpec(key, algorithm.getMacName()));
+            return new Lease(mac);
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException("Invalid key for " + algorithm.getMacName(), e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(algorithm.getMacName() + " is not available", e);
+        }
+    }
+
+    /**
+     * Keyed Mac with its working buffers, owned by one thread at a time
+     */
+    static final class Lease {
+
+        private final Mac mac;
+        private final byte[] message = new byte[8];
+        private final byte[] hash;
+
+        Lease(Mac mac) {
+            this.mac = mac;
+            this.hash = new byte[mac.getMacLength()];
+        }
+
+        int code(long counter, int modulo) {
+            for (int i = 7; i >= 0; i--) {
+                message[i] = (byte) counter;
+                counter >>>= 8;
+            }
+            mac.update(message, 0, message.length);
+            try {
+                mac.doFinal(hash, 0);
+            } catch (GeneralSecurityException e) {
+                // The buffer is sized to the Mac length
+                throw new IllegalStateException(e);
+            }
+            return Truncation.truncate(hash, hash.length, modulo);
+        }
+    }
+
+    private static final class ThreadLocalPool extends MacPool {
+
+        private final ThreadLocal<Lease> leases = ThreadLocal.withInitial(this::newLease);
+
+        ThreadLocalPool(byte[] key, HmacAlgorithm algorithm, Digits digits) {
+            super(key, algorithm, digits);
+        }
+
+        @Override
+        Lease acquire() {
+            return leases.get();
+        }
+
+        @Override
+        void release(Lease lease) {
+        }
+    }
+
+    private static final class StripedPool extends MacPool {
+
+        private final AtomicReferenceArray<Lease> slots;
+        private final int mask;
+
+        StripedPool(byte[] key, HmacAlgorithm algorithm, Digits digits, int stripes) {
+            super(key, algorithm, digits);
+            if (stripes <= 0 || stripes > 1 << 16) {
+                throw new IllegalArgumentException("Stripes out of range: " + stripes);
+            }
+            int size = Integer.highestOneBit(stripes * 2 - 1);
+            this.slots = new AtomicReferenceArray<Lease>(size);
+            this.mask = size - 1;
+        }
+
+        @Override
+        Lease acquire() {
+            int start = home();
+            for (int i = 0; i <= mask; i++) {
+                int slot = (start + i) & mask;
+                Lease lease = slots.get(slot);
+                if (lease != null && slots.compareAndSet(slot, lease, null)) {
+                    return lease;
+                }
+            }
+            return newLease();
+        }
+
+        @Override
+        void release(Lease lease) {
+            int start = home();
+            for (int i = 0; i <= mask; i++) {
+                int slot = (start + i) & mask;
+                if (slots.get(slot) == null && slots.compareAndSet(slot, null, lease)) {
+                    return;
+                }
+            }
+        }
+
+        private int home() {
+            long h = Thread.currentThread().getId() * 0x9e3779b97f4a7c15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+
+/**
+ * Code generation and verification reporting to an {@link OtpMetrics}: latencies, the offset at which each code
+ * matched and whether it was rejected or replayed. With {@link OtpMetrics#DISABLED} the measurements are skipped
+ * altogether, leaving a single predictable branch per call.
+ * <p/>
+ * Intervals are tried and codes compared as by {@link WindowVerifier}. When a {@link ReplayGuard} is given, accepted codes
+ * are consumed from it; it only covers past intervals, so no future interval is accepted then.
+ */
+public class MeteredVerifier {
+
+    private final Clock clock;
+    private final WindowVerifier window;
+    private final ReplayGuard replayGuard;
+    private final OtpMetrics metrics;
+    private final boolean enabled;
+
+    /**
+     * @param clock           Clock responsible for retrieve the current interval
+     * @param pastIntervals   Number of past intervals accepted
+     * @param futureIntervals Number of future intervals accepted
+     * @param metrics         Receiver of the measurements
+     */
+    public MeteredVerifier(Clock clock, int pastIntervals, int futureIntervals, OtpMetrics metrics) {
+        this(clock, pastIntervals, futureIntervals, null, metrics);
+    }
+
+    /**
+     * @param clock         Clock responsible for retrieve the current interval
+     * @param pastIntervals Number of past intervals accepted, at most the window of the replay guard
+     * @param replayGuard   Replay guard consuming the accepted codes
+     * @param metrics       Receiver of the measurements
+     */
+    public MeteredVerifier(Clock clock, int pastIntervals, ReplayGuard replayGuard, OtpMetrics metrics) {
+        this(clock, pastIntervals, 0, replayGuard, metrics);
+        // Codes matched beyond the window of the guard would be refused and counted as replays
+        if (pastIntervals > replayGuard.getPastIntervals()) {
+            throw new IllegalArgumentException("Past intervals beyond the window of the replay guard: "
+                    + pastIntervals + " > " + replayGuard.getPastIntervals());
+        }
+    }
+
+    private MeteredVerifier(Clock clock, int pastIntervals, int futureIntervals, ReplayGuard replayGuard,
+                            OtpMetrics metrics) {
+        this.clock = clock;
+        this.window = new WindowVerifier(clock, pastIntervals, futureIntervals);
+        this.replayGuard = replayGuard;
+        this.metrics = metrics;
+        this.enabled = metrics != OtpMetrics.DISABLED;
+    }
+
+    /**
+     * @param secret Prepared shared secret
+     * @return Code of the current interval
+     */
+    public int now(PreparedSecret secret) {
+        if (!enabled) {
+            return secret.code(clock.getCurrentInterval());
+        }
+        long start = metrics.start();
+        int code = secret.code(clock.getCurrentInterval());
+        metrics.generated(start);
+        return code;
+    }
+
+    /**
+     * @param secretId Identifier of the shared secret, used by the replay guard
+     * @param secret   Prepared shared secret
+     * @param code     Submitted code
+     * @return True if the code is valid within the window and, with a replay guard, was not used before
+     */
+    public boolean verify(long secretId, PreparedSecret secret, int code) {
+        long start = enabled ? metrics.start() : 0L;
+        long currentInterval = clock.getCurrentInterval();
+        int offset = window.match(secret, code, currentInterval);
+        if (offset != WindowVerifier.NO_MATCH && replayGuard != null
+                && !replayGuard.consume(secretId, currentInterval + offset, currentInterval)) {
+            if (enabled) {
+                metrics.replayed(start);
+            }
+            return false;
+        }
+        if (enabled) {
+            metrics.verified(start, offset);
+        }
+        return offset != WindowVerifier.NO_MATCH;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+/**
+ * Receiver of the measurements taken by {@link MeteredVerifier}, to be bridged to a metrics library such as
+ * Micrometer. {@link RecordingMetrics} is an in-memory implementation.
+ * <p/>
+ * Each operation first calls {@link #start()}, which decides whether its latency is measured, then reports its
+ * outcome with the returned value. Implementations are called on the hot path from many threads and must not block.
+ */
+public interface OtpMetrics {
+
+    /**
+     * Metrics turned off, {@link MeteredVerifier} skips the measurements altogether
+     */
+    OtpMetrics DISABLED = new OtpMetrics() {
+        @Override
+        public long start() {
+            return 0L;
+        }
+
+        @Override
+        public void generated(long start) {
+        }
+
+        @Override
+        public void verified(long start, int offset) {
+        }
+
+        @Override
+        public void replayed(long start) {
+        }
+    };
+
+    /**
+     * @return {@link System#nanoTime()} if the latency of the operation is measured, 0 otherwise
+     */
+    long start();
+
+    /**
+     * A code was generated
+     *
+     * @param start Value returned by {@link #start()}
+     */
+    void generated(long start);
+
+    /**
+     * A code was verified
+     *
+     * @param start  Value returned by {@link #start()}
+     * @param offset Offset of the matching interval relative to the current one, or {@link WindowVerifier#NO_MATCH}
+     *               if the code was rejected
+     */
+    void verified(long start, int offset);
+
+    /**
+     * A valid code was rejected because it had already been used
+     *
+     * @param start Value returned by {@link #start()}
+     */
+    void replayed(long start);
+}
@@ -0,0 +1,299 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.codec.Base32Codec;
+
+import java.util.Arrays;
+
+/**
+ * Shared secret ready to be used by the HMAC. Next to the decoded key it keeps the hash chaining state reached
+ * after absorbing the inner (ipad) and outer (opad) key blocks, so that each code costs two compressions, one for
+ * the counter and one for the inner digest, instead of four. Instances are immutable and can be shared.
+ */
+public final class PreparedSecret {
+
+    private static final byte INNER_PAD = 0x36;
+    private static final byte OUTER_PAD = 0x5c;
+
+    private final byte[] key;
+    private final HmacAlgorithm algorithm;
+    private final Digits digits;
+    private final int modulo;
+    private final int[] innerState;
+    private final int[] outerState;
+    private final long[] innerState64;
+    private final long[] outerState64;
+
+    /**
+     * Prepares the shared secret generated on Registration process for six digits HMAC-SHA1 codes
+     *
+     * @param secret Base32 encoded shared secret
+     */
+    public PreparedSecret(String secret) {
+        this(decode(secret));
+    }
+
+    /**
+     * Prepares an already decoded shared secret for six digits HMAC-SHA1 codes
+     *
+     * @param key Raw shared secret
+     */
+    public PreparedSecret(byte[] key) {
+        this(key, HmacAlgorithm.SHA1, Digits.SIX);
+    }
+
+    /**
+     * Prepares the shared secret generated on Registration process
+     *
+     * @param secret    Base32 encoded shared secret
+     * @param algorithm HMAC algorithm
+     * @param digits    Length of the codes
+     */
+    public PreparedSecret(String secret, HmacAlgorithm algorithm, Digits digits) {
+        this(decode(secret), algorithm, digits);
+    }
+
+    /**
+     * Prepares an already decoded shared secret
+     *
+     * @param key       Raw shared secret
+     * @param algorithm HMAC algorithm
+     * @param digits    Length of the codes
+     */
+    public PreparedSecret(byte[] key, HmacAlgorithm algorithm, Digits digits) {
+        Object event = JfrSupport.AVAILABLE ? JfrEvents.beginPreparation() : null;
+        this.key = key.clone();
+        this.algorithm = algorithm;
+        this.digits = digits;
+        this.modulo = digits.getValue();
+
+        switch (algorithm) {
+            case SHA1: {
+                int[] block = Sha1.keyBlock(key);
+                int[] w = new int[80];
+                innerState = new int[5];
+                outerState = new int[5];
+                Sha1.reset(innerState);
+                Sha1.compress(innerState, xor(block, INNER_PAD, w));
+                Sha1.reset(outerState);
+                Sha1.compress(outerState, xor(block, OUTER_PAD, w));
+                innerState64 = null;
+                outerState64 = null;
+                break;
+            }
+            case SHA256: {
+                int[] block = Sha256.keyBlock(key);
+                int[] w = new int[64];
+                innerState = new int[8];
+                outerState = new int[8];
+                Sha256.reset(innerState);
+                Sha256.compress(innerState, xor(block, INNER_PAD, w));
+                Sha256.reset(outerState);
+                Sha256.compress(outerState, xor(block, OUTER_PAD, w));
+                innerState64 = null;
+                outerState64 = null;
+                break;
+            }
+            case SHA512: {
+                long[] block = Sha512.keyBlock(key);
+                long[] w = new long[80];
+                innerState64 = new long[8];
+                outerState64 = new long[8];
+                Sha512.reset(innerState64);
+                Sha512.compress(innerState64, xor(block, INNER_PAD, w));
+                Sha512.reset(outerState64);
+                Sha512.compress(outerState64, xor(block, OUTER_PAD, w));
+                innerState = null;
+                outerState = null;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+        }
+        if (event != null) {
+            JfrEvents.prepared(event, algorithm, key.length);
+        }
+    }
+
+    /**
+     * Retrieves the decoded key
+     *
+     * @return Copy of the raw shared secret
+     */
+    public byte[] getKey() {
+        return key.clone();
+    }
+
+    public HmacAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public Digits getDigits() {
+        return digits;
+    }
+
+    /**
+     * Computes the code of the given moving factor
+     *
+     * @param counter Interval or counter
+     * @return Truncated code
+     */
+    public int code(long counter) {
+        if (JfrSupport.AVAILABLE && JfrEvents.isComputationEnabled()) {
+            return JfrEvents.code(this, counter);
+        }
+        return compute(counter);
+    }
+
+    int compute(long counter) {
+        switch (algorithm) {
+            case SHA1:
+                return sha1(counter);
+            case SHA256:
+                return sha256(counter);
+            default:
+                return sha512(counter);
+        }
+    }
+
+    private int sha1(long counter) {
+        Scratch scratch = Scratch.get();
+        int[] state = scratch.state;
+        int[] w = scratch.w;
+
+        System.arraycopy(innerState, 0, state, 0, 5);
+        w[0] = (int) (counter >>> 32);
+        w[1] = (int) counter;
+        w[2] = 0x80000000;
+        for (int i = 3; i < 15; i++) {
+            w[i] = 0;
+        }
+        w[15] = (Sha1.BLOCK_LENGTH + 8) << 3;
+        Sha1.compress(state, w);
+
+        System.arraycopy(state, 0, w, 0, 5);
+        System.arraycopy(outerState, 0, state, 0, 5);
+        w[5] = 0x80000000;
+        for (int i = 6; i < 15; i++) {
+            w[i] = 0;
+        }
+        w[15] = (Sha1.BLOCK_LENGTH + Sha1.DIGEST_LENGTH) << 3;
+        Sha1.compress(state, w);
+
+        return Truncation.truncate(state, 5, modulo);
+    }
+
+    private int sha256(long counter) {
+        Scratch scratch = Scratch.get();
+        int[] state = scratch.state;
+        int[] w = scratch.w;
+
+        System.arraycopy(innerState, 0, state, 0, 8);
+        w[0] = (int) (counter >>> 32);
+        w[1] = (int) counter;
+        w[2] = 0x80000000;
+        for (int i = 3; i < 15; i++) {
+            w[i] = 0;
+        }
+        w[15] = (Sha256.BLOCK_LENGTH + 8) << 3;
+        Sha256.compress(state, w);
+
+        System.arraycopy(state, 0, w, 0, 8);
+        System.arraycopy(outerState, 0, state, 0, 8);
+        w[8] = 0x80000000;
+        for (int i = 9; i < 15; i++) {
+            w[i] = 0;
+        }
+        w[15] = (Sha256.BLOCK_LENGTH + Sha256.DIGEST_LENGTH) << 3;
+        Sha256.compress(state, w);
+
+        return Truncation.truncate(state, 8, modulo);
+    }
+
+    private int sha512(long counter) {
+        Scratch scratch = Scratch.get();
+        long[] state = scratch.state64;
+        long[] w = scratch.w64;
+
+        System.arraycopy(innerState64, 0, state, 0, 8);
+        w[0] = counter;
+        w[1] = 0x8000000000000000L;
+        for (int i = 2; i < 15; i++) {
+            w[i] = 0;
+        }
+        w[15] = (Sha512.BLOCK_LENGTH + 8) << 3;
+        Sha512.compress(state, w);
+
+        System.arraycopy(state, 0, w, 0, 8);
+        System.arraycopy(outerState64, 0, state, 0, 8);
+        w[8] = 0x8000000000000000L;
+        for (int i = 9; i < 15; i++) {
+            w[i] = 0;
+        }
+        w[15] = (Sha512.BLOCK_LENGTH + Sha512.DIGEST_LENGTH) << 3;
+        Sha512.compress(state, w);
+
+        return Truncation.truncate(state, 8, modulo);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PreparedSecret)) {
+            return false;
+        }
+        PreparedSecret other = (PreparedSecret) o;
+        return algorithm == other.algorithm && digits == other.digits && Arrays.equals(key, other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Arrays.hashCode(key) + algorithm.ordinal()) + digits.ordinal();
+    }
+
+    static byte[] decode(String secret) {
+        return JfrSupport.AVAILABLE ? JfrEvents.decode(secret) : decodeBase32(secret);
+    }
+
+    static byte[] decodeBase32(String secret) {
+        try {
+            return Base32Codec.decode(secret);
+        } catch (Base32Codec.DecodingException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private static int[] xor(int[] block, byte pad, int[] w) {
+        int mask = (pad & 0xff) * 0x01010101;
+        for (int i = 0; i < 16; i++) {
+            w[i] = block[i] ^ mask;
+        }
+        return w;
+    }
+
+    private static long[] xor(long[] block, byte pad, long[] w) {
+        long mask = (pad & 0xffL) * 0x0101010101010101L;
+        for (int i = 0; i < 16; i++) {
+            w[i] = block[i] ^ mask;
+        }
+        return w;
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Computes codes from a key read in place, typically from an off-heap buffer, without copying it to the heap. Unlike
+ * {@link PreparedSecret} nothing is precomputed, so each code costs the four compressions of a plain HMAC.
+ */
+public final class RawKeyHmac {
+
+    /**
+     * Longest key accepted, the block length of HMAC-SHA1 and HMAC-SHA256
+     */
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private static final int INNER_PAD = 0x36363636;
+    private static final int OUTER_PAD = 0x5c5c5c5c;
+    private static final long INNER_PAD64 = 0x3636363636363636L;
+    private static final long OUTER_PAD64 = 0x5c5c5c5c5c5c5c5cL;
+
+    private RawKeyHmac() {
+    }
+
+    /**
+     * @param key       Big-endian buffer holding the key, read with absolute gets so its position is left untouched
+     * @param offset    Position of the key in the buffer
+     * @param length    Key length in bytes, at most {@link #MAX_KEY_LENGTH}
+     * @param algorithm HMAC algorithm
+     * @param digits    Length of the code
+     * @param counter   Interval or counter
+     * @return Truncated code
+     */
+    public static int code(ByteBuffer key, int offset, int length, HmacAlgorithm algorithm, Digits digits, long counter) {
+        if (length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Key longer than " + MAX_KEY_LENGTH + " bytes: " + length);
+        }
+        if (key.order() != ByteOrder.BIG_ENDIAN) {
+            throw new IllegalArgumentException("Key buffer must be big-endian");
+        }
+        Scratch scratch = Scratch.get();
+        switch (algorithm) {
+            case SHA1:
+                return sha1(scratch, key, offset, length, digits.getValue(), counter);
+            case SHA256:
+                return sha256(scratch, key, offset, length, digits.getValue(), counter);
+            default:
+                return sha512(scratch, key, offset, length, digits.getValue(), counter);
+        }
+    }
+
+    private static int sha1(Scratch scratch, ByteBuffer key, int offset, int length, int modulo, long counter) {
+        int[] block = scratch.block;
+        int[] state = scratch.state;
+        int[] w = scratch.w;
+        readBlock(key, offset, length, block);
+
+        Sha1.reset(state);
+        xor(block, INNER_PAD, w);
+        Sha1.compress(state, w);
+        counterBlock(w, counter, (Sha1.BLOCK_LENGTH + 8) << 3);
+        Sha1.compress(state, w);
+
+        // The inner digest waits in the key block, which is not needed once the outer pad is absorbed
+        xor(block, OUTER_PAD, w);
+        System.arraycopy(state, 0, block, 0, 5);
+        Sha1.reset(state);
+        Sha1.compress(state, w);
+        System.arraycopy(block, 0, w, 0, 5);
+        w[5] = 0x80000000;
+        for (int i = 6; i < 15; i++) {
+            w[i] = 0;
+        }
+        w[15] = (Sha1.BLOCK_LENGTH + Sha1.DIGEST_LENGTH) << 3;
+        Sha1.compress(state, w);
+
+        return Truncation.truncate(state, 5, modulo);
+    }
+
+    private static int sha256(Scratch scratch, ByteBuffer key, int offset, int length, int modulo, long counter) {
+        int[] block = scratch.block;
+        int[] state = scratch.state;
+        int[] w = scratch.w;
+        readBlock(key, offset, length, block);
+
+        Sha256.reset(state);
+        xor(block, INNER_PAD, w);
+        Sha256.compress(state, w);
+        counterBlock(w, counter, (Sha256.BLOCK_LENGTH + 8) << 3);
+        Sha256.compress(state, w);
+
+        xor(block, OUTER_PAD, w);
+        System.arraycopy(state, 0, block, 0, 8);
+        Sha256.reset(state);
+        Sha256.compress(state, w);
+        System.arraycopy(block, 0, w, 0, 8);
+        w[8] = 0x80000000;
+        for (int i = 9; i < 15; i++) {
+            w[i] = 0;
+        }
+        w[15] = (Sha256.BLOCK_LENGTH + Sha256.DIGEST_LENGTH) << 3;
+        Sha256.compress(state, w);
+
+        return Truncation.truncate(state, 8, modulo);
+    }
+
+    private static int sha512(Scratch scratch, ByteBuffer key, int offset, int length, int modulo, long counter) {
+        long[] block = scratch.block64;
+        long[] state = scratch.state64;
+        long[] w = scratch.w64;
+        for (int i = 0; i < 16; i++) {
+            int position = 8 * i;
+            if (position + 8 <= length) {
+                block[i] = key.getLong(offset + position);
+            } else {
+                long word = 0;
+                for (int j = 0; j < 8; j++) {
+                    word <<= 8;
+                    if (position + j < length) {
+                        word |= key.get(offset + position + j) & 0xffL;
+                    }
+                }
+                block[i] = word;
+            }
+        }
+
+        Sha512.reset(state);
+        for (int i = 0; i < 16; i++) {
+            w[i] = block[i] ^ INNER_PAD64;
+        }
+        Sha512.compress(state, w);
+        w[0] = counter;
+        w[1] = 0x8000000000000000L;
+        for (int i = 2; i < 15; i++) {
+            w[i] = 0;
+        }
+        w[15] = (Sha512.BLOCK_LENGTH + 8) << 3;
+        Sha512.compress(state, w);
+
+        for (int i = 0; i < 16; i++) {
+            w[i] = block[i] ^ OUTER_PAD64;
+        }
+        System.arraycopy(state, 0, block, 0, 8);
+        Sha512.reset(state);
+        Sha512.compress(state, w);
+        System.arraycopy(block, 0, w, 0, 8);
+        w[8] = 0x8000000000000000L;
+        for (int i = 9; i < 15; i++) {
+            w[i] = 0;
+        }
+        w[15] = (Sha512.BLOCK_LENGTH + Sha512.DIGEST_LENGTH) << 3;
+        Sha512.compress(state, w);
+
+        return Truncation.truncate(state, 8, modulo);
+    }
+
+    private static void readBlock(ByteBuffer key, int offset, int length, int[] block) {
+        for (int i = 0; i < 16; i++) {
+            int position = 4 * i;
+            if (position + 4 <= length) {
+                block[i] = key.getInt(offset + position);
+            } else {
+                int word = 0;
+                for (int j = 0; j < 4; j++) {
+                    word <<= 8;
+                    if (position + j < length) {
+                        word |= key.get(offset + position + j) & 0xff;
+                    }
+                }
+                block[i] = word;
+            }
+        }
+    }
+
+    private static void xor(int[] block, int pad, int[] w) {
+        for (int i = 0; i < 16; i++) {
+            w[i] = block[i] ^ pad;
+        }
+    }
+
+    private static void counterBlock(int[] w, long counter, int bitLength) {
+        w[0] = (int) (counter >>> 32);
+        w[1] = (int) counter;
+        w[2] = 0x80000000;
+        for (int i = 3; i < 15; i++) {
+            w[i] = 0;
+        }
+        w[15] = bitLength;
+    }
+}
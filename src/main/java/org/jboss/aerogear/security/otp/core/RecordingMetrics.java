@@ -0,0 +1,136 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link OtpMetrics}: latency histograms of generations and verifications, counts of accepted codes by
+ * window offset, i.e. the clock drift of the clients, and counts of rejected and replayed codes. The counts are
+ * exact, latencies may be sampled to keep the cost of the clock reads off most operations.
+ */
+public class RecordingMetrics implements OtpMetrics {
+
+    private final int sampling;
+    private final int maxOffset;
+    private final LatencyHistogram generateLatency = new LatencyHistogram();
+    private final LatencyHistogram verifyLatency = new LatencyHistogram();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder[] accepted;
+
+    /**
+     * Metrics timing every operation and counting offsets up to 8 intervals away from the current one
+     */
+    public RecordingMetrics() {
+        this(1, 8);
+    }
+
+    /**
+     * @param sampling  Average number of operations per timed one, 1 timing them all
+     * @param maxOffset Largest offset counted on its own, farther offsets are added to the outermost counters
+     */
+    public RecordingMetrics(int sampling, int maxOffset) {
+        if (sampling <= 0) {
+            throw new IllegalArgumentException("Sampling must be positive: " + sampling);
+        }
+        if (maxOffset < 0) {
+            throw new IllegalArgumentException("Max offset must not be negative: " + maxOffset);
+        }
+        this.sampling = sampling;
+        this.maxOffset = maxOffset;
+        this.accepted = new LongAdder[2 * maxOffset + 1];
+        for (int i = 0; i < accepted.length; i++) {
+            accepted[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public long start() {
+        if (sampling == 1 || ThreadLocalRandom.current().nextInt(sampling) == 0) {
+            return System.nanoTime();
+        }
+        return 0L;
+    }
+
+    @Override
+    public void generated(long start) {
+        generated.increment();
+        if (start != 0L) {
+            generateLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void verified(long start, int offset) {
+        if (offset == WindowVerifier.NO_MATCH) {
+            rejected.increment();
+        } else {
+            accepted[Math.max(-maxOffset, Math.min(maxOffset, offset)) + maxOffset].increment();
+        }
+        if (start != 0L) {
+            verifyLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void replayed(long start) {
+        replayed.increment();
+        if (start != 0L) {
+            verifyLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return Latencies of the timed generations
+     */
+    public LatencyHistogram getGenerateLatency() {
+        return generateLatency;
+    }
+
+    /**
+     * @return Latencies of the timed verifications, whatever their outcome
+     */
+    public LatencyHistogram getVerifyLatency() {
+        return verifyLatency;
+    }
+
+    public long getGenerated() {
+        return generated.sum();
+    }
+
+    /**
+     * @param offset Offset of the matching interval relative to the current one
+     * @return Number of codes accepted at the given offset
+     */
+    public long getAccepted(int offset) {
+        if (offset < -maxOffset || offset > maxOffset) {
+            throw new IllegalArgumentException("Offset out of range: " + offset);
+        }
+        return accepted[offset + maxOffset].sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getReplayed() {
+        return replayed.sum();
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+
+import java.util.Arrays;
+
+/**
+ * In-memory record of consumed (secret id, interval) pairs, rejecting a code that is submitted again within its
+ * verification window.
+ * <p/>
+ * Consumed pairs are kept in one primitive long set per interval. The sets form a ring as long as the window, so
+ * the set of an expired interval is recycled for the new one: its slots are stamped with a generation number and
+ * bumping the generation empties it in O(1), without scanning or reallocating. Ids are spread over independently
+ * locked stripes to keep contention low.
+ */
+public class ReplayGuard {
+
+    private static final int DELAY_WINDOW = 1;
+    private static final int DEFAULT_EXPECTED_USERS = 1 << 16;
+
+    private final Clock clock;
+    private final int pastIntervals;
+    private final WindowVerifier window;
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    /**
+     * Replay guard covering the window of {@link org.jboss.aerogear.security.otp.Totp#verify(String)}
+     *
+     * @param clock Clock responsible for retrieve the current interval
+     */
+    public ReplayGuard(Clock clock) {
+        this(clock, DELAY_WINDOW, DEFAULT_EXPECTED_USERS);
+    }
+
+    /**
+     * @param clock                    Clock responsible for retrieve the current interval
+     * @param pastIntervals            Number of past intervals accepted by the verifier
+     * @param expectedUsersPerInterval Expected number of successful verifications per interval, used for sizing
+     */
+    public ReplayGuard(Clock clock, int pastIntervals, int expectedUsersPerInterval) {
+        if (pastIntervals < 0) {
+            throw new IllegalArgumentException("Past intervals must not be negative: " + pastIntervals);
+        }
+        this.clock = clock;
+        this.pastIntervals = pastIntervals;
+        this.window = new WindowVerifier(clock, pastIntervals, 0);
+
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+        long perStripe = Math.min(1L << 29, Math.max(8L, 2L * expectedUsersPerInterval / stripeCount));
+        int capacity = Integer.highestOneBit((int) perStripe) << 1;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(pastIntervals + 1, capacity);
+        }
+    }
+
+    /**
+     * Verifies a timeout code and consumes it, so that the same code is rejected afterwards
+     *
+     * @param secretId Identifier of the shared secret
+     * @param secret   Prepared shared secret
+     * @param code     Submitted code
+     * @return True if the code is valid and was not used before
+     */
+    public boolean verify(long secretId, PreparedSecret secret, int code) {
+        long currentInterval = clock.getCurrentInterval();
+        int offset = window.match(secret, code, currentInterval);
+        return offset != WindowVerifier.NO_MATCH && consume(secretId, currentInterval + offset, currentInterval);
+    }
+
+    /**
+     * Records the use of the code matched at the given interval
+     *
+     * @param secretId        Identifier of the shared secret
+     * @param matchedInterval Interval at which the submitted code matched
+     * @return True if this is the first use, false for a replay, an interval outside the window or an interval
+     * whose slot of the ring already moved on to a newer one
+     */
+    public boolean consume(long secretId, long matchedInterval) {
+        return consume(secretId, matchedInterval, clock.getCurrentInterval());
+    }
+
+    /**
+     * @return Number of past intervals covered by the guard
+     */
+    public int getPastIntervals() {
+        return pastIntervals;
+    }
+
+    /**
+     * @param secretId Identifier of the shared secret
+     * @param interval Interval to look up
+     * @return True if a code of the given interval was already consumed
+     */
+    public boolean isConsumed(long secretId, long interval) {
+        long hash = mix(secretId);
+        return stripes[(int) (hash >>> stripeShift)].contains(secretId, hash, interval);
+    }
+
+    /**
+     * Same as {@link #consume(long, long)}, for verifiers that already read the current interval
+     */
+    boolean consume(long secretId, long matchedInterval, long currentInterval) {
+        if (matchedInterval > currentInterval || matchedInterval < currentInterval - pastIntervals) {
+            return false;
+        }
+        long hash = mix(secretId);
+        return stripes[(int) (hash >>> stripeShift)].add(secretId, hash, matchedInterval);
+    }
+
+    private static long mix(long id) {
+        long h = id * 0x9e3779b97f4a7c15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static final class Stripe {
+
+        private final Bucket[] ring;
+
+        Stripe(int length, int capacity) {
+            ring = new Bucket[length];
+            for (int i = 0; i < length; i++) {
+                ring[i] = new Bucket(capacity);
+            }
+        }
+
+        synchronized boolean add(long id, long hash, long interval) {
+            Bucket bucket = ring[(int) Math.floorMod(interval, (long) ring.length)];
+            if (interval < bucket.interval) {
+                // A stale clock read must not recycle the bucket of a newer interval and forget its consumptions
+                return false;
+            }
+            if (bucket.interval != interval) {
+                bucket.recycle(interval);
+            }
+            return bucket.add(id, hash);
+        }
+
+        synchronized boolean contains(long id, long hash, long interval) {
+            Bucket bucket = ring[(int) Math.floorMod(interval, (long) ring.length)];
+            return bucket.interval == interval && bucket.contains(id, hash);
+        }
+    }
+
+    /**
+     * Open addressing long set of a single interval. A slot is occupied only when its stamp equals the current
+     * generation.
+     */
+    private static final class Bucket {
+
+        private long interval = Long.MIN_VALUE;
+        private int generation = 1;
+        private int size;
+        private long[] keys;
+        private int[] stamps;
+
+        Bucket(int capacity) {
+            keys = new long[capacity];
+            stamps = new int[capacity];
+        }
+
+        void recycle(long interval) {
+            this.interval = interval;
+            this.size = 0;
+            if (++generation == 0) {
+                Arrays.fill(stamps, 0);
+                generation = 1;
+            }
+        }
+
+        boolean contains(long id, long hash) {
+            int mask = keys.length - 1;
+            for (int slot = (int) hash & mask; stamps[slot] == generation; slot = (slot + 1) & mask) {
+                if (keys[slot] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean add(long id, long hash) {
+            int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            for (; stamps[slot] == generation; slot = (slot + 1) & mask) {
+                if (keys[slot] == id) {
+                    return false;
+                }
+            }
+            keys[slot] = id;
+            stamps[slot] = generation;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return true;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldStamps = stamps;
+            int oldGeneration = generation;
+            keys = new long[oldKeys.length << 1];
+            stamps = new int[oldKeys.length << 1];
+            generation = 1;
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldStamps[i] == oldGeneration) {
+                    int slot = (int) mix(oldKeys[i]) & mask;
+                    while (stamps[slot] == generation) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    stamps[slot] = generation;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+/**
+ * Per-thread working area of the code computations, reused across calls so the hot path never allocates.
+ */
+final class Scratch {
+
+    private static final ThreadLocal<Scratch> CURRENT = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    final int[] state = new int[8];
+    final int[] w = new int[80];
+    final int[] block = new int[16];
+    final long[] state64 = new long[8];
+    final long[] w64 = new long[80];
+    final long[] block64 = new long[16];
+
+    private Scratch() {
+    }
+
+    static Scratch get() {
+        return CURRENT.get();
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+/**
+ * SHA-1 compression function (FIPS 180-4) working on 32-bit words, so that callers can feed blocks straight from
+ * primitives and keep the chaining state in reusable arrays.
+ */
+final class Sha1 {
+
+    static final int BLOCK_LENGTH = 64;
+    static final int DIGEST_LENGTH = 20;
+
+    static final int H0 = 0x67452301;
+    static final int H1 = 0xefcdab89;
+    static final int H2 = 0x98badcfe;
+    static final int H3 = 0x10325476;
+    static final int H4 = 0xc3d2e1f0;
+
+    private Sha1() {
+    }
+
+    /**
+     * Resets the chaining state to the initial hash value
+     *
+     * @param state Five words chaining state
+     */
+    static void reset(int[] state) {
+        state[0] = H0;
+        state[1] = H1;
+        state[2] = H2;
+        state[3] = H3;
+        state[4] = H4;
+    }
+
+    /**
+     * Absorbs one 512-bit block into the chaining state
+     *
+     * @param state Five words chaining state, updated in place
+     * @param w     Message schedule of at least 80 words, the block is expected in the first 16
+     */
+    static void compress(int[] state, int[] w) {
+        for (int t = 16; t < 80; t++) {
+            int x = w[t - 3] ^ w[t - 8] ^ w[t - 14] ^ w[t - 16];
+            w[t] = (x << 1) | (x >>> 31);
+        }
+
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        int e = state[4];
+
+        for (int t = 0; t < 20; t++) {
+            int temp = ((a << 5) | (a >>> 27)) + ((b & c) | (~b & d)) + e + w[t] + 0x5a827999;
+            e = d;
+            d = c;
+            c = (b << 30) | (b >>> 2);
+            b = a;
+            a = temp;
+        }
+        for (int t = 20; t < 40; t++) {
+            int temp = ((a << 5) | (a >>> 27)) + (b ^ c ^ d) + e + w[t] + 0x6ed9eba1;
+            e = d;
+            d = c;
+            c = (b << 30) | (b >>> 2);
+            b = a;
+            a = temp;
+        }
+        for (int t = 40; t < 60; t++) {
+            int temp = ((a << 5) | (a >>> 27)) + ((b & c) | (b & d) | (c & d)) + e + w[t] + 0x8f1bbcdc;
+            e = d;
+            d = c;
+            c = (b << 30) | (b >>> 2);
+            b = a;
+            a = temp;
+        }
+        for (int t = 60; t < 80; t++) {
+            int temp = ((a << 5) | (a >>> 27)) + (b ^ c ^ d) + e + w[t] + 0xca62c1d6;
+            e = d;
+            d = c;
+            c = (b << 30) | (b >>> 2);
+            b = a;
+            a = temp;
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+    }
+
+    /**
+     * Hashes a whole message, only meant for the one-off preparation of keys longer than a block
+     *
+     * @param message Message to hash
+     * @return Digest
+     */
+    static byte[] digest(byte[] message) {
+        int[] state = new int[5];
+        int[] w = new int[80];
+        reset(state);
+
+        byte[] padded = Words.pad(message, BLOCK_LENGTH, 8);
+        for (int offset = 0; offset < padded.length; offset += BLOCK_LENGTH) {
+            for (int i = 0; i < 16; i++) {
+                w[i] = Words.toInt(padded, offset + 4 * i);
+            }
+            compress(state, w);
+        }
+
+        byte[] digest = new byte[DIGEST_LENGTH];
+        for (int i = 0; i < 5; i++) {
+            Words.fromInt(state[i], digest, 4 * i);
+        }
+        return digest;
+    }
+
+    /**
+     * Packs a key into the 16 big-endian words of a block, hashing it first when it does not fit (RFC 2104)
+     *
+     * @param key Raw key
+     * @return Zero padded key block
+     */
+    static int[] keyBlock(byte[] key) {
+        byte[] block = Words.keyBlock(key.length > BLOCK_LENGTH ? digest(key) : key, BLOCK_LENGTH);
+        int[] words = new int[16];
+        for (int i = 0; i < 16; i++) {
+            words[i] = Words.toInt(block, 4 * i);
+        }
+        return words;
+    }
+}
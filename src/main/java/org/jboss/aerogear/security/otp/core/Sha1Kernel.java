@@ -0,0 +1,539 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+/**
+ * The two SHA-1 compressions of an HMAC-SHA1 over an 8-byte counter, starting from the precomputed pad states.
+ * Both blocks have a fixed layout: the counter or the inner digest, the padding bit, zeros and the bit length. The
+ * rounds are fully unrolled and every message schedule word that only depends on that fixed part is folded into a
+ * constant, so the schedule is neither stored in an array nor computed for the zero words.
+ */
+final class Sha1Kernel {
+
+    private Sha1Kernel() {
+    }
+
+    /**
+     * Compresses the inner block, the 8-byte counter after the key block xored with the inner pad
+     *
+     * @param state   Inner pad chaining state, left untouched
+     * @param counter Interval or counter
+     * @param digest  Five words receiving the inner digest
+     */
+    static void inner(int[] state, long counter, int[] digest) {
+        int w0 = (int) (counter >>> 32);
+        int w1 = (int) counter;
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        int e = state[4];
+
+        // Rounds 0 to 19
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (~b & d)) + w0 + 0x5a827999;
+        b = Integer.rotateLeft(b, 30);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (~a & c)) + w1 + 0x5a827999;
+        a = Integer.rotateLeft(a, 30);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (~e & b)) + 0xda827999;
+        e = Integer.rotateLeft(e, 30);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (~d & a)) + 0x5a827999;
+        d = Integer.rotateLeft(d, 30);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (~c & e)) + 0x5a827999;
+        c = Integer.rotateLeft(c, 30);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (~b & d)) + 0x5a827999;
+        b = Integer.rotateLeft(b, 30);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (~a & c)) + 0x5a827999;
+        a = Integer.rotateLeft(a, 30);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (~e & b)) + 0x5a827999;
+        e = Integer.rotateLeft(e, 30);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (~d & a)) + 0x5a827999;
+        d = Integer.rotateLeft(d, 30);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (~c & e)) + 0x5a827999;
+        c = Integer.rotateLeft(c, 30);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (~b & d)) + 0x5a827999;
+        b = Integer.rotateLeft(b, 30);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (~a & c)) + 0x5a827999;
+        a = Integer.rotateLeft(a, 30);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (~e & b)) + 0x5a827999;
+        e = Integer.rotateLeft(e, 30);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (~d & a)) + 0x5a827999;
+        d = Integer.rotateLeft(d, 30);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (~c & e)) + 0x5a827999;
+        c = Integer.rotateLeft(c, 30);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (~b & d)) + 0x5a827bd9;
+        b = Integer.rotateLeft(b, 30);
+        int w16 = Integer.rotateLeft(w0 ^ 0x80000000, 1);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (~a & c)) + w16 + 0x5a827999;
+        a = Integer.rotateLeft(a, 30);
+        int w17 = Integer.rotateLeft(w1, 1);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (~e & b)) + w17 + 0x5a827999;
+        e = Integer.rotateLeft(e, 30);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (~d & a)) + 0x5a827e1a;
+        d = Integer.rotateLeft(d, 30);
+        int w19 = Integer.rotateLeft(w16, 1);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (~c & e)) + w19 + 0x5a827999;
+        c = Integer.rotateLeft(c, 30);
+
+        // Rounds 20 to 39
+        int w20 = Integer.rotateLeft(w17, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w20 + 0x6ed9eba1;
+        b = Integer.rotateLeft(b, 30);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + 0x6ed9f4a3;
+        a = Integer.rotateLeft(a, 30);
+        int w22 = Integer.rotateLeft(w19, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w22 + 0x6ed9eba1;
+        e = Integer.rotateLeft(e, 30);
+        int w23 = Integer.rotateLeft(w20 ^ 0x00000240, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w23 + 0x6ed9eba1;
+        d = Integer.rotateLeft(d, 30);
+        int w24 = Integer.rotateLeft(w16 ^ 0x00000902, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w24 + 0x6ed9eba1;
+        c = Integer.rotateLeft(c, 30);
+        int w25 = Integer.rotateLeft(w22 ^ w17, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w25 + 0x6ed9eba1;
+        b = Integer.rotateLeft(b, 30);
+        int w26 = Integer.rotateLeft(w23 ^ 0x00000481, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w26 + 0x6ed9eba1;
+        a = Integer.rotateLeft(a, 30);
+        int w27 = Integer.rotateLeft(w24 ^ w19, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w27 + 0x6ed9eba1;
+        e = Integer.rotateLeft(e, 30);
+        int w28 = Integer.rotateLeft(w25 ^ w20, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w28 + 0x6ed9eba1;
+        d = Integer.rotateLeft(d, 30);
+        int w29 = Integer.rotateLeft(w26 ^ 0x00000b42, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w29 + 0x6ed9eba1;
+        c = Integer.rotateLeft(c, 30);
+        int w30 = Integer.rotateLeft(w27 ^ w22 ^ w16, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w30 + 0x6ed9eba1;
+        b = Integer.rotateLeft(b, 30);
+        int w31 = Integer.rotateLeft(w28 ^ w23 ^ w17 ^ 0x00000240, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w31 + 0x6ed9eba1;
+        a = Integer.rotateLeft(a, 30);
+        int w32 = Integer.rotateLeft(w29 ^ w24 ^ w16 ^ 0x00000481, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w32 + 0x6ed9eba1;
+        e = Integer.rotateLeft(e, 30);
+        int w33 = Integer.rotateLeft(w30 ^ w25 ^ w19 ^ w17, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w33 + 0x6ed9eba1;
+        d = Integer.rotateLeft(d, 30);
+        int w34 = Integer.rotateLeft(w31 ^ w26 ^ w20 ^ 0x00000481, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w34 + 0x6ed9eba1;
+        c = Integer.rotateLeft(c, 30);
+        int w35 = Integer.rotateLeft(w32 ^ w27 ^ w19 ^ 0x00000902, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w35 + 0x6ed9eba1;
+        b = Integer.rotateLeft(b, 30);
+        int w36 = Integer.rotateLeft(w33 ^ w28 ^ w22 ^ w20, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w36 + 0x6ed9eba1;
+        a = Integer.rotateLeft(a, 30);
+        int w37 = Integer.rotateLeft(w34 ^ w29 ^ w23 ^ 0x00000902, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w37 + 0x6ed9eba1;
+        e = Integer.rotateLeft(e, 30);
+        int w38 = Integer.rotateLeft(w35 ^ w30 ^ w24 ^ w22, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w38 + 0x6ed9eba1;
+        d = Integer.rotateLeft(d, 30);
+        int w39 = Integer.rotateLeft(w36 ^ w31 ^ w25 ^ w23, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w39 + 0x6ed9eba1;
+        c = Integer.rotateLeft(c, 30);
+
+        // Rounds 40 to 59
+        int w40 = Integer.rotateLeft(w37 ^ w32 ^ w26 ^ w24, 1);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (b & d) | (c & d)) + w40 + 0x8f1bbcdc;
+        b = Integer.rotateLeft(b, 30);
+        int w41 = Integer.rotateLeft(w38 ^ w33 ^ w27 ^ w25, 1);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (a & c) | (b & c)) + w41 + 0x8f1bbcdc;
+        a = Integer.rotateLeft(a, 30);
+        int w42 = Integer.rotateLeft(w39 ^ w34 ^ w28 ^ w26, 1);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (e & b) | (a & b)) + w42 + 0x8f1bbcdc;
+        e = Integer.rotateLeft(e, 30);
+        int w43 = Integer.rotateLeft(w40 ^ w35 ^ w29 ^ w27, 1);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (d & a) | (e & a)) + w43 + 0x8f1bbcdc;
+        d = Integer.rotateLeft(d, 30);
+        int w44 = Integer.rotateLeft(w41 ^ w36 ^ w30 ^ w28, 1);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (c & e) | (d & e)) + w44 + 0x8f1bbcdc;
+        c = Integer.rotateLeft(c, 30);
+        int w45 = Integer.rotateLeft(w42 ^ w37 ^ w31 ^ w29, 1);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (b & d) | (c & d)) + w45 + 0x8f1bbcdc;
+        b = Integer.rotateLeft(b, 30);
+        int w46 = Integer.rotateLeft(w43 ^ w38 ^ w32 ^ w30, 1);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (a & c) | (b & c)) + w46 + 0x8f1bbcdc;
+        a = Integer.rotateLeft(a, 30);
+        int w47 = Integer.rotateLeft(w44 ^ w39 ^ w33 ^ w31, 1);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (e & b) | (a & b)) + w47 + 0x8f1bbcdc;
+        e = Integer.rotateLeft(e, 30);
+        int w48 = Integer.rotateLeft(w45 ^ w40 ^ w34 ^ w32, 1);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (d & a) | (e & a)) + w48 + 0x8f1bbcdc;
+        d = Integer.rotateLeft(d, 30);
+        int w49 = Integer.rotateLeft(w46 ^ w41 ^ w35 ^ w33, 1);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (c & e) | (d & e)) + w49 + 0x8f1bbcdc;
+        c = Integer.rotateLeft(c, 30);
+        int w50 = Integer.rotateLeft(w47 ^ w42 ^ w36 ^ w34, 1);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (b & d) | (c & d)) + w50 + 0x8f1bbcdc;
+        b = Integer.rotateLeft(b, 30);
+        int w51 = Integer.rotateLeft(w48 ^ w43 ^ w37 ^ w35, 1);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (a & c) | (b & c)) + w51 + 0x8f1bbcdc;
+        a = Integer.rotateLeft(a, 30);
+        int w52 = Integer.rotateLeft(w49 ^ w44 ^ w38 ^ w36, 1);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (e & b) | (a & b)) + w52 + 0x8f1bbcdc;
+        e = Integer.rotateLeft(e, 30);
+        int w53 = Integer.rotateLeft(w50 ^ w45 ^ w39 ^ w37, 1);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (d & a) | (e & a)) + w53 + 0x8f1bbcdc;
+        d = Integer.rotateLeft(d, 30);
+        int w54 = Integer.rotateLeft(w51 ^ w46 ^ w40 ^ w38, 1);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (c & e) | (d & e)) + w54 + 0x8f1bbcdc;
+        c = Integer.rotateLeft(c, 30);
+        int w55 = Integer.rotateLeft(w52 ^ w47 ^ w41 ^ w39, 1);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (b & d) | (c & d)) + w55 + 0x8f1bbcdc;
+        b = Integer.rotateLeft(b, 30);
+        int w56 = Integer.rotateLeft(w53 ^ w48 ^ w42 ^ w40, 1);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (a & c) | (b & c)) + w56 + 0x8f1bbcdc;
+        a = Integer.rotateLeft(a, 30);
+        int w57 = Integer.rotateLeft(w54 ^ w49 ^ w43 ^ w41, 1);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (e & b) | (a & b)) + w57 + 0x8f1bbcdc;
+        e = Integer.rotateLeft(e, 30);
+        int w58 = Integer.rotateLeft(w55 ^ w50 ^ w44 ^ w42, 1);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (d & a) | (e & a)) + w58 + 0x8f1bbcdc;
+        d = Integer.rotateLeft(d, 30);
+        int w59 = Integer.rotateLeft(w56 ^ w51 ^ w45 ^ w43, 1);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (c & e) | (d & e)) + w59 + 0x8f1bbcdc;
+        c = Integer.rotateLeft(c, 30);
+
+        // Rounds 60 to 79
+        int w60 = Integer.rotateLeft(w57 ^ w52 ^ w46 ^ w44, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w60 + 0xca62c1d6;
+        b = Integer.rotateLeft(b, 30);
+        int w61 = Integer.rotateLeft(w58 ^ w53 ^ w47 ^ w45, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w61 + 0xca62c1d6;
+        a = Integer.rotateLeft(a, 30);
+        int w62 = Integer.rotateLeft(w59 ^ w54 ^ w48 ^ w46, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w62 + 0xca62c1d6;
+        e = Integer.rotateLeft(e, 30);
+        int w63 = Integer.rotateLeft(w60 ^ w55 ^ w49 ^ w47, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w63 + 0xca62c1d6;
+        d = Integer.rotateLeft(d, 30);
+        int w64 = Integer.rotateLeft(w61 ^ w56 ^ w50 ^ w48, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w64 + 0xca62c1d6;
+        c = Integer.rotateLeft(c, 30);
+        int w65 = Integer.rotateLeft(w62 ^ w57 ^ w51 ^ w49, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w65 + 0xca62c1d6;
+        b = Integer.rotateLeft(b, 30);
+        int w66 = Integer.rotateLeft(w63 ^ w58 ^ w52 ^ w50, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w66 + 0xca62c1d6;
+        a = Integer.rotateLeft(a, 30);
+        int w67 = Integer.rotateLeft(w64 ^ w59 ^ w53 ^ w51, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w67 + 0xca62c1d6;
+        e = Integer.rotateLeft(e, 30);
+        int w68 = Integer.rotateLeft(w65 ^ w60 ^ w54 ^ w52, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w68 + 0xca62c1d6;
+        d = Integer.rotateLeft(d, 30);
+        int w69 = Integer.rotateLeft(w66 ^ w61 ^ w55 ^ w53, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w69 + 0xca62c1d6;
+        c = Integer.rotateLeft(c, 30);
+        int w70 = Integer.rotateLeft(w67 ^ w62 ^ w56 ^ w54, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w70 + 0xca62c1d6;
+        b = Integer.rotateLeft(b, 30);
+        int w71 = Integer.rotateLeft(w68 ^ w63 ^ w57 ^ w55, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w71 + 0xca62c1d6;
+        a = Integer.rotateLeft(a, 30);
+        int w72 = Integer.rotateLeft(w69 ^ w64 ^ w58 ^ w56, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w72 + 0xca62c1d6;
+        e = Integer.rotateLeft(e, 30);
+        int w73 = Integer.rotateLeft(w70 ^ w65 ^ w59 ^ w57, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w73 + 0xca62c1d6;
+        d = Integer.rotateLeft(d, 30);
+        int w74 = Integer.rotateLeft(w71 ^ w66 ^ w60 ^ w58, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w74 + 0xca62c1d6;
+        c = Integer.rotateLeft(c, 30);
+        int w75 = Integer.rotateLeft(w72 ^ w67 ^ w61 ^ w59, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w75 + 0xca62c1d6;
+        b = Integer.rotateLeft(b, 30);
+        int w76 = Integer.rotateLeft(w73 ^ w68 ^ w62 ^ w60, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w76 + 0xca62c1d6;
+        a = Integer.rotateLeft(a, 30);
+        int w77 = Integer.rotateLeft(w74 ^ w69 ^ w63 ^ w61, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w77 + 0xca62c1d6;
+        e = Integer.rotateLeft(e, 30);
+        int w78 = Integer.rotateLeft(w75 ^ w70 ^ w64 ^ w62, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w78 + 0xca62c1d6;
+        d = Integer.rotateLeft(d, 30);
+        int w79 = Integer.rotateLeft(w76 ^ w71 ^ w65 ^ w63, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w79 + 0xca62c1d6;
+        c = Integer.rotateLeft(c, 30);
+
+        digest[0] = state[0] + a;
+        digest[1] = state[1] + b;
+        digest[2] = state[2] + c;
+        digest[3] = state[3] + d;
+        digest[4] = state[4] + e;
+    }
+
+    /**
+     * Compresses the outer block, the inner digest after the key block xored with the outer pad
+     *
+     * @param state  Outer pad chaining state, left untouched
+     * @param digest Five words holding the inner digest, replaced by the HMAC
+     */
+    static void outer(int[] state, int[] digest) {
+        int w0 = digest[0];
+        int w1 = digest[1];
+        int w2 = digest[2];
+        int w3 = digest[3];
+        int w4 = digest[4];
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        int e = state[4];
+
+        // Rounds 0 to 19
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (~b & d)) + w0 + 0x5a827999;
+        b = Integer.rotateLeft(b, 30);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (~a & c)) + w1 + 0x5a827999;
+        a = Integer.rotateLeft(a, 30);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (~e & b)) + w2 + 0x5a827999;
+        e = Integer.rotateLeft(e, 30);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (~d & a)) + w3 + 0x5a827999;
+        d = Integer.rotateLeft(d, 30);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (~c & e)) + w4 + 0x5a827999;
+        c = Integer.rotateLeft(c, 30);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (~b & d)) + 0xda827999;
+        b = Integer.rotateLeft(b, 30);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (~a & c)) + 0x5a827999;
+        a = Integer.rotateLeft(a, 30);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (~e & b)) + 0x5a827999;
+        e = Integer.rotateLeft(e, 30);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (~d & a)) + 0x5a827999;
+        d = Integer.rotateLeft(d, 30);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (~c & e)) + 0x5a827999;
+        c = Integer.rotateLeft(c, 30);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (~b & d)) + 0x5a827999;
+        b = Integer.rotateLeft(b, 30);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (~a & c)) + 0x5a827999;
+        a = Integer.rotateLeft(a, 30);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (~e & b)) + 0x5a827999;
+        e = Integer.rotateLeft(e, 30);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (~d & a)) + 0x5a827999;
+        d = Integer.rotateLeft(d, 30);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (~c & e)) + 0x5a827999;
+        c = Integer.rotateLeft(c, 30);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (~b & d)) + 0x5a827c39;
+        b = Integer.rotateLeft(b, 30);
+        int w16 = Integer.rotateLeft(w2 ^ w0, 1);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (~a & c)) + w16 + 0x5a827999;
+        a = Integer.rotateLeft(a, 30);
+        int w17 = Integer.rotateLeft(w3 ^ w1, 1);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (~e & b)) + w17 + 0x5a827999;
+        e = Integer.rotateLeft(e, 30);
+        int w18 = Integer.rotateLeft(w4 ^ w2 ^ 0x000002a0, 1);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (~d & a)) + w18 + 0x5a827999;
+        d = Integer.rotateLeft(d, 30);
+        int w19 = Integer.rotateLeft(w16 ^ w3 ^ 0x80000000, 1);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (~c & e)) + w19 + 0x5a827999;
+        c = Integer.rotateLeft(c, 30);
+
+        // Rounds 20 to 39
+        int w20 = Integer.rotateLeft(w17 ^ w4, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w20 + 0x6ed9eba1;
+        b = Integer.rotateLeft(b, 30);
+        int w21 = Integer.rotateLeft(w18 ^ 0x80000000, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w21 + 0x6ed9eba1;
+        a = Integer.rotateLeft(a, 30);
+        int w22 = Integer.rotateLeft(w19, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w22 + 0x6ed9eba1;
+        e = Integer.rotateLeft(e, 30);
+        int w23 = Integer.rotateLeft(w20 ^ 0x000002a0, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w23 + 0x6ed9eba1;
+        d = Integer.rotateLeft(d, 30);
+        int w24 = Integer.rotateLeft(w21 ^ w16, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w24 + 0x6ed9eba1;
+        c = Integer.rotateLeft(c, 30);
+        int w25 = Integer.rotateLeft(w22 ^ w17, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w25 + 0x6ed9eba1;
+        b = Integer.rotateLeft(b, 30);
+        int w26 = Integer.rotateLeft(w23 ^ w18, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w26 + 0x6ed9eba1;
+        a = Integer.rotateLeft(a, 30);
+        int w27 = Integer.rotateLeft(w24 ^ w19, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w27 + 0x6ed9eba1;
+        e = Integer.rotateLeft(e, 30);
+        int w28 = Integer.rotateLeft(w25 ^ w20, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w28 + 0x6ed9eba1;
+        d = Integer.rotateLeft(d, 30);
+        int w29 = Integer.rotateLeft(w26 ^ w21 ^ 0x000002a0, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w29 + 0x6ed9eba1;
+        c = Integer.rotateLeft(c, 30);
+        int w30 = Integer.rotateLeft(w27 ^ w22 ^ w16, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w30 + 0x6ed9eba1;
+        b = Integer.rotateLeft(b, 30);
+        int w31 = Integer.rotateLeft(w28 ^ w23 ^ w17 ^ 0x000002a0, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w31 + 0x6ed9eba1;
+        a = Integer.rotateLeft(a, 30);
+        int w32 = Integer.rotateLeft(w29 ^ w24 ^ w18 ^ w16, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w32 + 0x6ed9eba1;
+        e = Integer.rotateLeft(e, 30);
+        int w33 = Integer.rotateLeft(w30 ^ w25 ^ w19 ^ w17, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w33 + 0x6ed9eba1;
+        d = Integer.rotateLeft(d, 30);
+        int w34 = Integer.rotateLeft(w31 ^ w26 ^ w20 ^ w18, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w34 + 0x6ed9eba1;
+        c = Integer.rotateLeft(c, 30);
+        int w35 = Integer.rotateLeft(w32 ^ w27 ^ w21 ^ w19, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w35 + 0x6ed9eba1;
+        b = Integer.rotateLeft(b, 30);
+        int w36 = Integer.rotateLeft(w33 ^ w28 ^ w22 ^ w20, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w36 + 0x6ed9eba1;
+        a = Integer.rotateLeft(a, 30);
+        int w37 = Integer.rotateLeft(w34 ^ w29 ^ w23 ^ w21, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w37 + 0x6ed9eba1;
+        e = Integer.rotateLeft(e, 30);
+        int w38 = Integer.rotateLeft(w35 ^ w30 ^ w24 ^ w22, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w38 + 0x6ed9eba1;
+        d = Integer.rotateLeft(d, 30);
+        int w39 = Integer.rotateLeft(w36 ^ w31 ^ w25 ^ w23, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w39 + 0x6ed9eba1;
+        c = Integer.rotateLeft(c, 30);
+
+        // Rounds 40 to 59
+        int w40 = Integer.rotateLeft(w37 ^ w32 ^ w26 ^ w24, 1);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (b & d) | (c & d)) + w40 + 0x8f1bbcdc;
+        b = Integer.rotateLeft(b, 30);
+        int w41 = Integer.rotateLeft(w38 ^ w33 ^ w27 ^ w25, 1);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (a & c) | (b & c)) + w41 + 0x8f1bbcdc;
+        a = Integer.rotateLeft(a, 30);
+        int w42 = Integer.rotateLeft(w39 ^ w34 ^ w28 ^ w26, 1);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (e & b) | (a & b)) + w42 + 0x8f1bbcdc;
+        e = Integer.rotateLeft(e, 30);
+        int w43 = Integer.rotateLeft(w40 ^ w35 ^ w29 ^ w27, 1);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (d & a) | (e & a)) + w43 + 0x8f1bbcdc;
+        d = Integer.rotateLeft(d, 30);
+        int w44 = Integer.rotateLeft(w41 ^ w36 ^ w30 ^ w28, 1);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (c & e) | (d & e)) + w44 + 0x8f1bbcdc;
+        c = Integer.rotateLeft(c, 30);
+        int w45 = Integer.rotateLeft(w42 ^ w37 ^ w31 ^ w29, 1);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (b & d) | (c & d)) + w45 + 0x8f1bbcdc;
+        b = Integer.rotateLeft(b, 30);
+        int w46 = Integer.rotateLeft(w43 ^ w38 ^ w32 ^ w30, 1);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (a & c) | (b & c)) + w46 + 0x8f1bbcdc;
+        a = Integer.rotateLeft(a, 30);
+        int w47 = Integer.rotateLeft(w44 ^ w39 ^ w33 ^ w31, 1);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (e & b) | (a & b)) + w47 + 0x8f1bbcdc;
+        e = Integer.rotateLeft(e, 30);
+        int w48 = Integer.rotateLeft(w45 ^ w40 ^ w34 ^ w32, 1);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (d & a) | (e & a)) + w48 + 0x8f1bbcdc;
+        d = Integer.rotateLeft(d, 30);
+        int w49 = Integer.rotateLeft(w46 ^ w41 ^ w35 ^ w33, 1);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (c & e) | (d & e)) + w49 + 0x8f1bbcdc;
+        c = Integer.rotateLeft(c, 30);
+        int w50 = Integer.rotateLeft(w47 ^ w42 ^ w36 ^ w34, 1);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (b & d) | (c & d)) + w50 + 0x8f1bbcdc;
+        b = Integer.rotateLeft(b, 30);
+        int w51 = Integer.rotateLeft(w48 ^ w43 ^ w37 ^ w35, 1);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (a & c) | (b & c)) + w51 + 0x8f1bbcdc;
+        a = Integer.rotateLeft(a, 30);
+        int w52 = Integer.rotateLeft(w49 ^ w44 ^ w38 ^ w36, 1);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (e & b) | (a & b)) + w52 + 0x8f1bbcdc;
+        e = Integer.rotateLeft(e, 30);
+        int w53 = Integer.rotateLeft(w50 ^ w45 ^ w39 ^ w37, 1);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (d & a) | (e & a)) + w53 + 0x8f1bbcdc;
+        d = Integer.rotateLeft(d, 30);
+        int w54 = Integer.rotateLeft(w51 ^ w46 ^ w40 ^ w38, 1);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (c & e) | (d & e)) + w54 + 0x8f1bbcdc;
+        c = Integer.rotateLeft(c, 30);
+        int w55 = Integer.rotateLeft(w52 ^ w47 ^ w41 ^ w39, 1);
+        e += Integer.rotateLeft(a, 5) + ((b & c) | (b & d) | (c & d)) + w55 + 0x8f1bbcdc;
+        b = Integer.rotateLeft(b, 30);
+        int w56 = Integer.rotateLeft(w53 ^ w48 ^ w42 ^ w40, 1);
+        d += Integer.rotateLeft(e, 5) + ((a & b) | (a & c) | (b & c)) + w56 + 0x8f1bbcdc;
+        a = Integer.rotateLeft(a, 30);
+        int w57 = Integer.rotateLeft(w54 ^ w49 ^ w43 ^ w41, 1);
+        c += Integer.rotateLeft(d, 5) + ((e & a) | (e & b) | (a & b)) + w57 + 0x8f1bbcdc;
+        e = Integer.rotateLeft(e, 30);
+        int w58 = Integer.rotateLeft(w55 ^ w50 ^ w44 ^ w42, 1);
+        b += Integer.rotateLeft(c, 5) + ((d & e) | (d & a) | (e & a)) + w58 + 0x8f1bbcdc;
+        d = Integer.rotateLeft(d, 30);
+        int w59 = Integer.rotateLeft(w56 ^ w51 ^ w45 ^ w43, 1);
+        a += Integer.rotateLeft(b, 5) + ((c & d) | (c & e) | (d & e)) + w59 + 0x8f1bbcdc;
+        c = Integer.rotateLeft(c, 30);
+
+        // Rounds 60 to 79
+        int w60 = Integer.rotateLeft(w57 ^ w52 ^ w46 ^ w44, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w60 + 0xca62c1d6;
+        b = Integer.rotateLeft(b, 30);
+        int w61 = Integer.rotateLeft(w58 ^ w53 ^ w47 ^ w45, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w61 + 0xca62c1d6;
+        a = Integer.rotateLeft(a, 30);
+        int w62 = Integer.rotateLeft(w59 ^ w54 ^ w48 ^ w46, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w62 + 0xca62c1d6;
+        e = Integer.rotateLeft(e, 30);
+        int w63 = Integer.rotateLeft(w60 ^ w55 ^ w49 ^ w47, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w63 + 0xca62c1d6;
+        d = Integer.rotateLeft(d, 30);
+        int w64 = Integer.rotateLeft(w61 ^ w56 ^ w50 ^ w48, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w64 + 0xca62c1d6;
+        c = Integer.rotateLeft(c, 30);
+        int w65 = Integer.rotateLeft(w62 ^ w57 ^ w51 ^ w49, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w65 + 0xca62c1d6;
+        b = Integer.rotateLeft(b, 30);
+        int w66 = Integer.rotateLeft(w63 ^ w58 ^ w52 ^ w50, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w66 + 0xca62c1d6;
+        a = Integer.rotateLeft(a, 30);
+        int w67 = Integer.rotateLeft(w64 ^ w59 ^ w53 ^ w51, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w67 + 0xca62c1d6;
+        e = Integer.rotateLeft(e, 30);
+        int w68 = Integer.rotateLeft(w65 ^ w60 ^ w54 ^ w52, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w68 + 0xca62c1d6;
+        d = Integer.rotateLeft(d, 30);
+        int w69 = Integer.rotateLeft(w66 ^ w61 ^ w55 ^ w53, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w69 + 0xca62c1d6;
+        c = Integer.rotateLeft(c, 30);
+        int w70 = Integer.rotateLeft(w67 ^ w62 ^ w56 ^ w54, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w70 + 0xca62c1d6;
+        b = Integer.rotateLeft(b, 30);
+        int w71 = Integer.rotateLeft(w68 ^ w63 ^ w57 ^ w55, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w71 + 0xca62c1d6;
+        a = Integer.rotateLeft(a, 30);
+        int w72 = Integer.rotateLeft(w69 ^ w64 ^ w58 ^ w56, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w72 + 0xca62c1d6;
+        e = Integer.rotateLeft(e, 30);
+        int w73 = Integer.rotateLeft(w70 ^ w65 ^ w59 ^ w57, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w73 + 0xca62c1d6;
+        d = Integer.rotateLeft(d, 30);
+        int w74 = Integer.rotateLeft(w71 ^ w66 ^ w60 ^ w58, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w74 + 0xca62c1d6;
+        c = Integer.rotateLeft(c, 30);
+        int w75 = Integer.rotateLeft(w72 ^ w67 ^ w61 ^ w59, 1);
+        e += Integer.rotateLeft(a, 5) + (b ^ c ^ d) + w75 + 0xca62c1d6;
+        b = Integer.rotateLeft(b, 30);
+        int w76 = Integer.rotateLeft(w73 ^ w68 ^ w62 ^ w60, 1);
+        d += Integer.rotateLeft(e, 5) + (a ^ b ^ c) + w76 + 0xca62c1d6;
+        a = Integer.rotateLeft(a, 30);
+        int w77 = Integer.rotateLeft(w74 ^ w69 ^ w63 ^ w61, 1);
+        c += Integer.rotateLeft(d, 5) + (e ^ a ^ b) + w77 + 0xca62c1d6;
+        e = Integer.rotateLeft(e, 30);
+        int w78 = Integer.rotateLeft(w75 ^ w70 ^ w64 ^ w62, 1);
+        b += Integer.rotateLeft(c, 5) + (d ^ e ^ a) + w78 + 0xca62c1d6;
+        d = Integer.rotateLeft(d, 30);
+        int w79 = Integer.rotateLeft(w76 ^ w71 ^ w65 ^ w63, 1);
+        a += Integer.rotateLeft(b, 5) + (c ^ d ^ e) + w79 + 0xca62c1d6;
+        c = Integer.rotateLeft(c, 30);
+
+        digest[0] = state[0] + a;
+        digest[1] = state[1] + b;
+        digest[2] = state[2] + c;
+        digest[3] = state[3] + d;
+        digest[4] = state[4] + e;
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+/**
+ * SHA-256 compression function (FIPS 180-4) working on 32-bit words.
+ */
+final class Sha256 {
+
+    static final int BLOCK_LENGTH = 64;
+    static final int DIGEST_LENGTH = 32;
+
+    private static final int[] IV = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private Sha256() {
+    }
+
+    /**
+     * @param state Eight words chaining state
+     */
+    static void reset(int[] state) {
+        System.arraycopy(IV, 0, state, 0, 8);
+    }
+
+    /**
+     * Absorbs one 512-bit block into the chaining state
+     *
+     * @param state Eight words chaining state, updated in place
+     * @param w     Message schedule of at least 64 words, the block is expected in the first 16
+     */
+    static void compress(int[] state, int[] w) {
+        for (int t = 16; t < 64; t++) {
+            int x = w[t - 15];
+            int y = w[t - 2];
+            int s0 = Integer.rotateRight(x, 7) ^ Integer.rotateRight(x, 18) ^ (x >>> 3);
+            int s1 = Integer.rotateRight(y, 17) ^ Integer.rotateRight(y, 19) ^ (y >>> 10);
+            w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+        }
+
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        int e = state[4];
+        int f = state[5];
+        int g = state[6];
+        int h = state[7];
+
+        for (int t = 0; t < 64; t++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int t1 = h + s1 + ((e & f) ^ (~e & g)) + K[t] + w[t];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int t2 = s0 + ((a & b) ^ (a & c) ^ (b & c));
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+
+    /**
+     * Hashes a whole message, only meant for the one-off preparation of keys longer than a block
+     *
+     * @param message Message to hash
+     * @return Digest
+     */
+    static byte[] digest(byte[] message) {
+        int[] state = new int[8];
+        int[] w = new int[64];
+        reset(state);
+
+        byte[] padded = Words.pad(message, BLOCK_LENGTH, 8);
+        for (int offset = 0; offset < padded.length; offset += BLOCK_LENGTH) {
+            for (int i = 0; i < 16; i++) {
+                w[i] = Words.toInt(padded, offset + 4 * i);
+            }
+            compress(state, w);
+        }
+
+        byte[] digest = new byte[DIGEST_LENGTH];
+        for (int i = 0; i < 8; i++) {
+            Words.fromInt(state[i], digest, 4 * i);
+        }
+        return digest;
+    }
+
+    /**
+     * Packs a key into the 16 big-endian words of a block, hashing it first when it does not fit (RFC 2104)
+     *
+     * @param key Raw key
+     * @return Zero padded key block
+     */
+    static int[] keyBlock(byte[] key) {
+        byte[] block = Words.keyBlock(key.length > BLOCK_LENGTH ? digest(key) : key, BLOCK_LENGTH);
+        int[] words = new int[16];
+        for (int i = 0; i < 16; i++) {
+            words[i] = Words.toInt(block, 4 * i);
+        }
+        return words;
+    }
+}
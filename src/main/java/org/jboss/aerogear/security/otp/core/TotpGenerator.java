@@ -0,0 +1,79 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+
+/**
+ * Allocation free counterpart of {@link org.jboss.aerogear.security.otp.Totp}. The shared secret is prepared once
+ * and codes are returned as the raw truncated int, computed in a per-thread scratch area, so generating a code does
+ * not create any garbage. A single instance can be shared across threads.
+ */
+public class TotpGenerator {
+
+    private final PreparedSecret secret;
+    private final Clock clock;
+
+    /**
+     * Initialize an OTP generator with the shared secret generated on Registration process
+     *
+     * @param secret Base32 encoded shared secret
+     */
+    public TotpGenerator(String secret) {
+        this(secret, new Clock());
+    }
+
+    /**
+     * Initialize an OTP generator with the shared secret generated on Registration process
+     *
+     * @param secret Base32 encoded shared secret
+     * @param clock  Clock responsible for retrieve the current interval
+     */
+    public TotpGenerator(String secret, Clock clock) {
+        this(new PreparedSecret(secret), clock);
+    }
+
+    /**
+     * Initialize an OTP generator with an already prepared shared secret
+     *
+     * @param secret Prepared shared secret
+     * @param clock  Clock responsible for retrieve the current interval
+     */
+    public TotpGenerator(PreparedSecret secret, Clock clock) {
+        this.secret = secret;
+        this.clock = clock;
+    }
+
+    /**
+     * Retrieves the current OTP
+     *
+     * @return OTP as an int, callers are responsible for the zero padding when displaying it
+     */
+    public int code() {
+        return secret.code(clock.getCurrentInterval());
+    }
+
+    /**
+     * Retrieves the OTP of the given interval
+     *
+     * @param interval Interval, i.e. the moving factor of the HMAC
+     * @return OTP as an int
+     */
+    public int code(long interval) {
+        return secret.code(interval);
+    }
+}
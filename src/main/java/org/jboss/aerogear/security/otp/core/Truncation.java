@@ -0,0 +1,73 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+/**
+ * Dynamic truncation (RFC 4226 section 5.3) applied directly on digest words.
+ */
+final class Truncation {
+
+    private Truncation() {
+    }
+
+    /**
+     * @param digest Digest as big-endian words
+     * @param words  Number of digest words
+     * @param modulo Ten to the power of the number of digits
+     * @return Truncated code
+     */
+    static int truncate(int[] digest, int words, int modulo) {
+        int offset = digest[words - 1] & 0xf;
+        int word = offset >>> 2;
+        int shift = (offset & 3) << 3;
+        int binary = digest[word];
+        if (shift != 0) {
+            binary = (binary << shift) | (digest[word + 1] >>> (32 - shift));
+        }
+        return (binary & 0x7fffffff) % modulo;
+    }
+
+    /**
+     * @param digest Digest as big-endian 64-bit words
+     * @param words  Number of digest words
+     * @param modulo Ten to the power of the number of digits
+     * @return Truncated code
+     */
+    static int truncate(long[] digest, int words, int modulo) {
+        int offset = (int) digest[words - 1] & 0xf;
+        int word = offset >>> 3;
+        int shift = (offset & 7) << 3;
+        long binary = digest[word];
+        if (shift != 0) {
+            binary = (binary << shift) | (digest[word + 1] >>> (64 - shift));
+        }
+        return ((int) (binary >>> 32) & 0x7fffffff) % modulo;
+    }
+
+    /**
+     * @param hash   Digest bytes
+     * @param length Digest length in bytes
+     * @param modulo Ten to the power of the number of digits
+     * @return Truncated code
+     */
+    static int truncate(byte[] hash, int length, int modulo) {
+        int offset = hash[length - 1] & 0xf;
+        int binary = (hash[offset] & 0x7f) << 24 | (hash[offset + 1] & 0xff) << 16
+                | (hash[offset + 2] & 0xff) << 8 | (hash[offset + 3] & 0xff);
+        return binary % modulo;
+    }
+}
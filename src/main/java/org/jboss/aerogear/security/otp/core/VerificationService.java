@@ -0,0 +1,209 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Asynchronous verification facade for blocking stacks. Each request starts on its own task, which loads the
+ * secret of the user and verifies the code once the secret is available, without holding a thread while the
+ * loader waits. The verification itself always runs on the executor, never on the thread completing the loader's
+ * stage, so loaders backed by I/O threads do not compute HMACs. On JDK 21 and later the default executor starts one
+ * virtual thread per task. Older JDKs fall back to the common fork-join pool.
+ * <p/>
+ * Each tenant gets a fixed number of permits, taken when a request is accepted and released when its verdict is
+ * known. Requests beyond them fail right away with a {@link RejectedExecutionException}, so a slow loader or a
+ * flooding tenant cannot pile up unbounded work.
+ */
+public class VerificationService implements Closeable {
+
+    private static final int DELAY_WINDOW = 1;
+
+    /**
+     * Source of the secrets, typically a database or a remote vault
+     */
+    public interface SecretLoader {
+
+        /**
+         * @param tenant Tenant of the user
+         * @param userId User id
+         * @return Stage completed with the prepared secret of the user, or with null if the user has none
+         */
+        CompletionStage<PreparedSecret> load(String tenant, long userId);
+    }
+
+    private final Clock clock;
+    private final WindowVerifier window;
+    private final SecretLoader loader;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final int permitsPerTenant;
+    private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<String, Semaphore>();
+
+    /**
+     * Service running on the default executor
+     *
+     * @param clock            Clock responsible for retrieve the current interval
+     * @param loader           Source of the secrets
+     * @param permitsPerTenant Maximum number of requests in flight per tenant
+     */
+    public VerificationService(Clock clock, SecretLoader loader, int permitsPerTenant) {
+        this(clock, loader, defaultExecutor(), permitsPerTenant, true);
+    }
+
+    /**
+     * @param clock            Clock responsible for retrieve the current interval
+     * @param loader           Source of the secrets
+     * @param executor         Executor starting the requests, left running on close
+     * @param permitsPerTenant Maximum number of requests in flight per tenant
+     */
+    public VerificationService(Clock clock, SecretLoader loader, Executor executor, int permitsPerTenant) {
+        this(clock, loader, executor, permitsPerTenant, false);
+    }
+
+    private VerificationService(Clock clock, SecretLoader loader, Executor executor, int permitsPerTenant,
+                                boolean ownsExecutor) {
+        if (permitsPerTenant <= 0) {
+            throw new IllegalArgumentException("Permits must be positive: " + permitsPerTenant);
+        }
+        this.clock = clock;
+        this.window = new WindowVerifier(clock, DELAY_WINDOW, 0);
+        this.loader = loader;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.permitsPerTenant = permitsPerTenant;
+    }
+
+    /**
+     * Verifies a timeout code against the current and previous intervals
+     *
+     * @param tenant Tenant of the user
+     * @param userId User id
+     * @param code   Submitted code
+     * @return Future completed with true if the code is valid, with false if it is not or if the user has no secret,
+     * and exceptionally with a {@link RejectedExecutionException} if the tenant has no permit left
+     */
+    public CompletableFuture<Boolean> verify(String tenant, long userId, int code) {
+        CompletableFuture<Boolean> verdict = new CompletableFuture<Boolean>();
+        Semaphore semaphore = semaphore(tenant);
+        if (!semaphore.tryAcquire()) {
+            verdict.completeExceptionally(new RejectedExecutionException("Too many verifications in flight for " + tenant));
+            return verdict;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    loader.load(tenant, userId).whenComplete((secret, failure) -> {
+                        // The stage may complete on a thread of the loader, the HMACs go back to the executor
+                        try {
+                            executor.execute(() -> complete(verdict, semaphore, secret, failure, code));
+                        } catch (RejectedExecutionException e) {
+                            semaphore.release();
+                            verdict.completeExceptionally(e);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    semaphore.release();
+                    verdict.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            semaphore.release();
+            verdict.completeExceptionally(e);
+        }
+        return verdict;
+    }
+
+    /**
+     * @param tenant Tenant
+     * @return Number of requests of the tenant accepted and not yet answered
+     */
+    public int inFlight(String tenant) {
+        Semaphore semaphore = permits.get(tenant);
+        return semaphore == null ? 0 : permitsPerTenant - semaphore.availablePermits();
+    }
+
+    /**
+     * Shuts the default executor down, letting the requests in flight complete. A supplied executor is left
+     * running.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor && executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private void complete(CompletableFuture<Boolean> verdict, Semaphore semaphore, PreparedSecret secret,
+                          Throwable failure, int code) {
+        // The permit goes back before the verdict is published, so a caller reacting to it finds the permit free
+        if (failure != null) {
+            semaphore.release();
+            verdict.completeExceptionally(failure);
+            return;
+        }
+        boolean valid;
+        try {
+            valid = secret != null && matches(secret, code);
+        } catch (RuntimeException e) {
+            semaphore.release();
+            verdict.completeExceptionally(e);
+            return;
+        }
+        semaphore.release();
+        verdict.complete(valid);
+    }
+
+    private boolean matches(PreparedSecret secret, int code) {
+        return window.match(secret, code, clock.getCurrentInterval()) != WindowVerifier.NO_MATCH;
+    }
+
+    private Semaphore semaphore(String tenant) {
+        Semaphore semaphore = permits.get(tenant);
+        if (semaphore == null) {
+            Semaphore created = new Semaphore(permitsPerTenant);
+            semaphore = permits.putIfAbsent(tenant, created);
+            if (semaphore == null) {
+                semaphore = created;
+            }
+        }
+        return semaphore;
+    }
+
+    /**
+     * The project targets Java 8, so the virtual thread executor is looked up reflectively
+     */
+    private static Executor defaultExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return ForkJoinPool.commonPool();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+
+/**
+ * Verifier accepting codes from a configurable number of past and future intervals around the current one.
+ * <p/>
+ * {@link #verify(PreparedSecret, int)} computes one HMAC per interval of the window. For secrets receiving many
+ * attempts, {@link #window(PreparedSecret)} hands out a {@link CodeWindow} that computes the codes of the window once
+ * per interval and afterwards only scans them, so repeated attempts or a brute-force flood cost no HMAC at all.
+ * <p/>
+ * Codes are compared with {@link Codes}, without branching on their digits, and codes submitted as text are parsed
+ * once rather than compared as Strings.
+ */
+public class WindowVerifier {
+
+    /**
+     * Offset returned when a code does not match any interval of the window
+     */
+    public static final int NO_MATCH = Integer.MIN_VALUE;
+
+    private final Clock clock;
+    private final int pastIntervals;
+    private final int futureIntervals;
+
+    /**
+     * @param clock           Clock responsible for retrieve the current interval
+     * @param pastIntervals   Number of past intervals accepted
+     * @param futureIntervals Number of future intervals accepted
+     */
+    public WindowVerifier(Clock clock, int pastIntervals, int futureIntervals) {
+        if (pastIntervals < 0 || futureIntervals < 0) {
+            throw new IllegalArgumentException("Window must not be negative: " + pastIntervals + ", " + futureIntervals);
+        }
+        this.clock = clock;
+        this.pastIntervals = pastIntervals;
+        this.futureIntervals = futureIntervals;
+    }
+
+    /**
+     * @param secret Prepared shared secret
+     * @param code   Submitted code
+     * @return True if the code is valid within the window
+     */
+    public boolean verify(PreparedSecret secret, int code) {
+        return offset(secret, code) != NO_MATCH;
+    }
+
+    /**
+     * @param secret Prepared shared secret
+     * @param code   Submitted code, as many digits as the codes of the secret
+     * @return True if the code is well formed and valid within the window
+     */
+    public boolean verify(PreparedSecret secret, CharSequence code) {
+        int parsed = Codes.parse(code, secret.getDigits());
+        return parsed != Codes.INVALID && verify(secret, parsed);
+    }
+
+    /**
+     * @param secret Prepared shared secret
+     * @param code   Submitted code
+     * @return Offset of the matching interval relative to the current one, or {@link #NO_MATCH}
+     */
+    public int offset(PreparedSecret secret, int code) {
+        if (JfrSupport.AVAILABLE && JfrEvents.isVerificationEnabled()) {
+            Object event = JfrEvents.beginVerification();
+            int offset = match(secret, code);
+            JfrEvents.verified(event, secret.getAlgorithm(), offset, false);
+            return offset;
+        }
+        return match(secret, code);
+    }
+
+    private int match(PreparedSecret secret, int code) {
+        return match(secret, code, clock.getCurrentInterval());
+    }
+
+    /**
+     * Window search shared with the other verifiers of the package, which read the clock themselves, e.g. once per
+     * batch, and do not report to JFR
+     */
+    int match(PreparedSecret secret, int code, long currentInterval) {
+        for (int i = 0, length = pastIntervals + futureIntervals + 1; i < length; i++) {
+            int offset = offsetAt(i);
+            // A wrong code always runs the whole window, stopping at a match only tells that the code is valid
+            if (Codes.equal(secret.code(currentInterval + offset), code)) {
+                return offset;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * Intervals are tried in the order of PasscodeGenerator.verifyTimeoutCode: the current one, then the past ones
+     * and finally the future ones, each time moving away from the current interval.
+     */
+    private int offsetAt(int index) {
+        return index <= pastIntervals ? -index : index - pastIntervals;
+    }
+
+    /**
+     * @param secret Prepared shared secret
+     * @return Window caching the codes of the secret for the current interval
+     */
+    public CodeWindow window(PreparedSecret secret) {
+        return new CodeWindow(secret);
+    }
+
+    /**
+     * Codes of one secret over the window, recomputed when the clock moves to another interval. Instances are
+     * thread safe: a tick publishes a new immutable snapshot, concurrent recomputations are harmless.
+     */
+    public final class CodeWindow {
+
+        private final PreparedSecret secret;
+        private volatile Snapshot snapshot;
+
+        private CodeWindow(PreparedSecret secret) {
+            this.secret = secret;
+        }
+
+        /**
+         * @param code Submitted code
+         * @return True if the code is valid within the window
+         */
+        public boolean verify(int code) {
+            return offset(code) != NO_MATCH;
+        }
+
+        /**
+         * @param code Submitted code, as many digits as the codes of the secret
+         * @return True if the code is well formed and valid within the window
+         */
+        public boolean verify(CharSequence code) {
+            int parsed = Codes.parse(code, secret.getDigits());
+            return parsed != Codes.INVALID && verify(parsed);
+        }
+
+        /**
+         * @param code Submitted code
+         * @return Offset of the matching interval relative to the current one, or {@link #NO_MATCH}
+         */
+        public int offset(int code) {
+            if (JfrSupport.AVAILABLE && JfrEvents.isVerificationEnabled()) {
+                Object event = JfrEvents.beginVerification();
+                int offset = match(code);
+                JfrEvents.verified(event, secret.getAlgorithm(), offset, true);
+                return offset;
+            }
+            return match(code);
+        }
+
+        private int match(int code) {
+            int index = Codes.indexOf(codes(clock.getCurrentInterval()), code);
+            return index < 0 ? NO_MATCH : offsetAt(index);
+        }
+
+        private int[] codes(long currentInterval) {
+            Snapshot current = snapshot;
+            if (current == null || current.interval != currentInterval) {
+                int[] codes = new int[pastIntervals + futureIntervals + 1];
+                for (int i = 0; i < codes.length; i++) {
+                    codes[i] = secret.code(currentInterval + offsetAt(i));
+                }
+                current = new Snapshot(currentInterval, codes);
+                snapshot = current;
+            }
+            return current.codes;
+        }
+    }
+
+    private static final class Snapshot {
+
+        final long interval;
+        final int[] codes;
+
+        Snapshot(long interval, int[] codes) {
+            this.interval = interval;
+            this.codes = codes;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.core;
+
+/**
+ * Big-endian packing helpers shared by the hash functions.
+ */
+final class Words {
+
+    private Words() {
+    }
+
+    static int toInt(byte[] bytes, int offset) {
+        return (bytes[offset] << 24) | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    static long toLong(byte[] bytes, int offset) {
+        return ((long) toInt(bytes, offset) << 32) | (toInt(bytes, offset + 4) & 0xffffffffL);
+    }
+
+    static void fromInt(int value, byte[] bytes, int offset) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Merkle-Damgard padding: a single 1 bit, zeros and the message length in bits
+     *
+     * @param message     Message to pad
+     * @param blockLength Block length in bytes
+     * @param lengthBytes Size of the length field in bytes
+     * @return Padded copy of the message, a multiple of the block length
+     */
+    static byte[] pad(byte[] message, int blockLength, int lengthBytes) {
+        long bitLength = (long) message.length << 3;
+        int paddedLength = ((message.length + lengthBytes) / blockLength + 1) * blockLength;
+        byte[] padded = new byte[paddedLength];
+        System.arraycopy(message, 0, padded, 0, message.length);
+        padded[message.length] = (byte) 0x80;
+        for (int i = 0; i < 8; i++) {
+            padded[paddedLength - 1 - i] = (byte) (bitLength >>> (8 * i));
+        }
+        return padded;
+    }
+
+    /**
+     * Zero pads a key, hashed beforehand by the caller when longer than a block, to a whole block (RFC 2104)
+     *
+     * @param key         Key that fits a block
+     * @param blockLength Block length in bytes
+     * @return Key block
+     */
+    static byte[] keyBlock(byte[] key, int blockLength) {
+        byte[] block = new byte[blockLength];
+        System.arraycopy(key, 0, block, 0, key.length);
+        return block;
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.store;
+
+import org.jboss.aerogear.security.otp.codec.Base32Codec;
+import org.jboss.aerogear.security.otp.codec.OtpauthUri;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongFunction;
+
+/**
+ * Bulk provisioning of shared secrets, for the onboarding of a whole tenant. The range of user ids is split across
+ * a fork-join pool; each worker draws its secrets from its own {@link SecureRandom}, encodes them and renders their
+ * otpauth URI, the one of {@link org.jboss.aerogear.security.otp.Totp#uri(String)}, and hands the records to the
+ * sink as they are produced.
+ * <p/>
+ * The default {@code SecureRandom} reads the operating system source behind a global lock, which would serialize
+ * the workers. Workers use SHA1PRNG instances instead, each seeded on its first use, when the provider has it.
+ */
+public class EnrollmentGenerator {
+
+    /**
+     * Length of the secrets of {@link org.jboss.aerogear.security.otp.api.Base32#random()}, 16 Base32 characters
+     */
+    public static final int DEFAULT_SECRET_LENGTH = 10;
+
+    private static final int SPLIT_THRESHOLD = 512;
+
+    /**
+     * Receiver of the generated records, called concurrently from the workers of the pool
+     */
+    public interface Sink {
+
+        /**
+         * @param userId User id
+         * @param secret Base32 encoded shared secret
+         * @param uri    otpauth URI of the secret, typically rendered as a QR code
+         */
+        void accept(long userId, String secret, String uri);
+    }
+
+    private final ForkJoinPool pool;
+    private final int secretLength;
+    private final ThreadLocal<SecureRandom> randoms = ThreadLocal.withInitial(EnrollmentGenerator::newRandom);
+
+    /**
+     * Generator of 10 bytes secrets running on the common pool
+     */
+    public EnrollmentGenerator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_SECRET_LENGTH);
+    }
+
+    /**
+     * @param pool         Pool running the generation
+     * @param secretLength Length of the raw secrets in bytes
+     */
+    public EnrollmentGenerator(ForkJoinPool pool, int secretLength) {
+        if (secretLength <= 0) {
+            throw new IllegalArgumentException("Secret length must be positive: " + secretLength);
+        }
+        this.pool = pool;
+        this.secretLength = secretLength;
+    }
+
+    /**
+     * Generates the secrets of a range of user ids and waits for the sink to receive them all. Records reach the
+     * sink in no particular order.
+     *
+     * @param firstUserId Id of the first user
+     * @param count       Number of users
+     * @param names       Account name of a user id, shown by the authenticator app
+     * @param sink        Receiver of the records
+     */
+    public void generate(long firstUserId, int count, LongFunction<String> names, Sink sink) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative: " + count);
+        }
+        pool.invoke(new Range(firstUserId, firstUserId + count, names, sink));
+    }
+
+    private void generate(long from, long to, LongFunction<String> names, Sink sink) {
+        SecureRandom random = randoms.get();
+        byte[] key = new byte[secretLength];
+        StringBuilder builder = new StringBuilder(Base32Codec.encodedLength(secretLength));
+        StringBuilder uri = new StringBuilder(64);
+        for (long userId = from; userId < to; userId++) {
+            random.nextBytes(key);
+            builder.setLength(0);
+            Base32Codec.encode(key, 0, secretLength, builder);
+            String secret = builder.toString();
+            uri.setLength(0);
+            OtpauthUri.write(names.apply(userId), secret, uri);
+            sink.accept(userId, secret, uri.toString());
+        }
+    }
+
+    private static SecureRandom newRandom() {
+        try {
+            return SecureRandom.getInstance("SHA1PRNG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    private final class Range extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final LongFunction<String> names;
+        private final Sink sink;
+
+        Range(long from, long to, LongFunction<String> names, Sink sink) {
+            this.from = from;
+            this.to = to;
+            this.names = names;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                generate(from, to, names, sink);
+                return;
+            }
+            long middle = from + (to - from) / 2;
+            invokeAll(new Range(from, middle, names, sink), new Range(middle, to, names, sink));
+        }
+    }
+}
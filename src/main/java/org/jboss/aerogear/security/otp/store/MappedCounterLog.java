@@ -0,0 +1,201 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.store;
+
+import org.jboss.aerogear.security.otp.core.CounterStore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter store persisted in an append-only, memory-mapped log. Every advance appends a (token, counter, check)
+ * record to the mapping, which the operating system writes back on its own: the counters survive a crash or a
+ * restart of the process without an fsync per verification. {@link #force()} flushes the log to the device for
+ * callers that must also survive a power loss.
+ * <p/>
+ * On open the log is replayed up to the first record whose check does not match, i.e. the end of the log or a
+ * record torn by a power loss, keeping the highest counter of each token. When the mapping is full the log is
+ * compacted into a new file holding one record per token, which atomically replaces the old one.
+ */
+public class MappedCounterLog implements CounterStore, Closeable {
+
+    private static final long MAGIC = 0x4f5450434c4f4731L;
+    private static final long CHECK_SEED = 0x5deece66dL;
+    private static final int HEADER_LENGTH = 8;
+    private static final int RECORD_LENGTH = 24;
+    private static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private final File file;
+    private final int capacity;
+    private final ConcurrentHashMap<Long, AtomicLong> counters = new ConcurrentHashMap<Long, AtomicLong>();
+    private MappedByteBuffer log;
+
+    /**
+     * Opens or creates a log with room for 43690 records before the first compaction
+     *
+     * @param file Log file
+     * @throws IOException If the log cannot be read or mapped
+     */
+    public MappedCounterLog(File file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens or creates a log
+     *
+     * @param file     Log file
+     * @param capacity Minimum size of the mapping in bytes
+     * @throws IOException If the log cannot be read or mapped
+     */
+    public MappedCounterLog(File file, int capacity) throws IOException {
+        if (capacity < HEADER_LENGTH + RECORD_LENGTH) {
+            throw new IllegalArgumentException("Capacity too small: " + capacity);
+        }
+        this.file = file;
+        this.capacity = capacity;
+        this.log = map(file, capacity);
+        replay();
+    }
+
+    @Override
+    public long get(long tokenId) {
+        AtomicLong counter = counters.get(tokenId);
+        return counter == null ? 0L : counter.get();
+    }
+
+    @Override
+    public boolean advance(long tokenId, long expected, long next) {
+        if (next <= expected) {
+            throw new IllegalArgumentException("Counters only move forward: " + expected + " to " + next);
+        }
+        AtomicLong counter = counters.get(tokenId);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            AtomicLong existing = counters.putIfAbsent(tokenId, created);
+            counter = existing == null ? created : existing;
+        }
+        if (!counter.compareAndSet(expected, next)) {
+            return false;
+        }
+        try {
+            append(tokenId, next);
+        } catch (IOException e) {
+            // The code must stay usable when its counter could not be persisted, unless a later advance took over
+            counter.compareAndSet(next, expected);
+            throw new IllegalStateException("Unable to compact " + file, e);
+        }
+        return true;
+    }
+
+    /**
+     * Flushes the log to the storage device
+     */
+    public synchronized void force() {
+        log.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        log.force();
+    }
+
+    private synchronized void append(long tokenId, long counter) throws IOException {
+        if (log.remaining() < RECORD_LENGTH) {
+            compact();
+        }
+        write(log, tokenId, counter);
+    }
+
+    private void compact() throws IOException {
+        int size = HEADER_LENGTH + counters.size() * RECORD_LENGTH;
+        int newCapacity = Math.max(capacity, 2 * size);
+        File compacted = new File(file.getPath() + ".compact");
+        Files.deleteIfExists(compacted.toPath());
+
+        MappedByteBuffer buffer = map(compacted, newCapacity);
+        buffer.putLong(0, MAGIC);
+        for (Map.Entry<Long, AtomicLong> entry : counters.entrySet()) {
+            write(buffer, entry.getKey(), entry.getValue().get());
+        }
+        buffer.force();
+        Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = buffer;
+    }
+
+    private void replay() throws IOException {
+        if (log.getLong(0) == 0L) {
+            log.putLong(0, MAGIC);
+        } else if (log.getLong(0) != MAGIC) {
+            throw new IOException(file + " is not a counter log");
+        }
+        int position = HEADER_LENGTH;
+        while (position + RECORD_LENGTH <= log.capacity()) {
+            long tokenId = log.getLong(position);
+            long counter = log.getLong(position + 8);
+            if (log.getLong(position + 16) != check(tokenId, counter)) {
+                break;
+            }
+            AtomicLong current = counters.get(tokenId);
+            if (current == null) {
+                counters.put(tokenId, new AtomicLong(counter));
+            } else if (current.get() < counter) {
+                current.set(counter);
+            }
+            position += RECORD_LENGTH;
+        }
+        // Through Buffer, JDK 9+ compile the call to an override missing from Java 8
+        ((Buffer) log).position(position);
+    }
+
+    private static void write(ByteBuffer buffer, long tokenId, long counter) {
+        buffer.putLong(tokenId);
+        buffer.putLong(counter);
+        buffer.putLong(check(tokenId, counter));
+    }
+
+    private static long check(long tokenId, long counter) {
+        return (tokenId * 0x9e3779b97f4a7c15L) ^ Long.rotateLeft(counter, 31) ^ CHECK_SEED;
+    }
+
+    private static MappedByteBuffer map(File file, int capacity) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = Math.max(channel.size(), capacity);
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be mapped");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            ((Buffer) buffer).position(HEADER_LENGTH);
+            return buffer;
+        } finally {
+            // The mapping stays valid once the channel is closed
+            raf.close();
+        }
+    }
+}
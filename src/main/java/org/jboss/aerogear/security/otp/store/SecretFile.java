@@ -0,0 +1,279 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.store;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.Codes;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.core.RawKeyHmac;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Read-only, memory-mapped file of shared secrets. The file starts with a header, followed by an index of
+ * (user id, record offset) entries sorted by user id and by the records themselves:
+ * <pre>
+ * header  magic:8 count:4 reserved:4
+ * index   count * (userId:8 offset:8)
+ * records algorithm:1 digits:1 period:2 length:1 key:length
+ * </pre>
+ * Opening the file only maps it, the operating system pages the index and the records in as lookups touch them,
+ * so verifications can start right away whatever the number of users. Lookups binary search the index and
+ * compute codes from the mapped key in place.
+ */
+public class SecretFile {
+
+    private static final long MAGIC = 0x4f54505345435231L;
+    private static final int HEADER_LENGTH = 16;
+    private static final int ENTRY_LENGTH = 16;
+
+    private static final HmacAlgorithm[] ALGORITHMS = HmacAlgorithm.values();
+    private static final Digits[] ALL_DIGITS = Digits.values();
+
+    private final ByteBuffer buffer;
+    private final int count;
+
+    /**
+     * Maps a secret file
+     *
+     * @param file File written by a {@link Writer}
+     * @throws IOException If the file cannot be mapped or is not a secret file
+     */
+    public SecretFile(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be mapped");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.capacity() < HEADER_LENGTH || mapped.getLong(0) != MAGIC) {
+                throw new IOException(file + " is not a secret file");
+            }
+            this.buffer = mapped;
+            this.count = mapped.getInt(8);
+        } finally {
+            // The mapping stays valid once the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * @return Number of secrets in the file
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param userId User id
+     * @return True if the file holds a secret for the user
+     */
+    public boolean contains(long userId) {
+        return record(userId) >= 0;
+    }
+
+    /**
+     * @param userId User id
+     * @return Interval length of the user in seconds, or -1 if the file holds no secret for the user
+     */
+    public int period(long userId) {
+        int record = record(userId);
+        return record < 0 ? -1 : buffer.getShort(record + 2) & 0xffff;
+    }
+
+    /**
+     * Computes the code of a user at a given time, using the period of the user
+     *
+     * @param userId      User id
+     * @param timeSeconds Seconds since the epoch
+     * @return Truncated code, or -1 if the file holds no secret for the user
+     */
+    public int code(long userId, long timeSeconds) {
+        int record = record(userId);
+        if (record < 0) {
+            return -1;
+        }
+        long interval = timeSeconds / (buffer.getShort(record + 2) & 0xffff);
+        return RawKeyHmac.code(buffer, record + 5, buffer.get(record + 4), ALGORITHMS[buffer.get(record)],
+                ALL_DIGITS[buffer.get(record + 1)], interval);
+    }
+
+    /**
+     * Verifies a code of a user against the current and past intervals
+     *
+     * @param userId        User id
+     * @param code          Submitted code
+     * @param timeSeconds   Seconds since the epoch
+     * @param pastIntervals Number of past intervals accepted
+     * @return True if the code is valid
+     */
+    public boolean verify(long userId, int code, long timeSeconds, int pastIntervals) {
+        int record = record(userId);
+        if (record < 0) {
+            return false;
+        }
+        int period = buffer.getShort(record + 2) & 0xffff;
+        int length = buffer.get(record + 4);
+        HmacAlgorithm algorithm = ALGORITHMS[buffer.get(record)];
+        Digits digits = ALL_DIGITS[buffer.get(record + 1)];
+        long interval = timeSeconds / period;
+        for (int i = pastIntervals; i >= 0; --i) {
+            if (Codes.equal(RawKeyHmac.code(buffer, record + 5, length, algorithm, digits, interval - i), code)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the secret of a user to the heap, for callers that keep hot secrets prepared
+     *
+     * @param userId User id
+     * @return Prepared secret, or null if the file holds no secret for the user
+     */
+    public PreparedSecret prepare(long userId) {
+        int record = record(userId);
+        if (record < 0) {
+            return null;
+        }
+        byte[] key = new byte[buffer.get(record + 4)];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = buffer.get(record + 5 + i);
+        }
+        return new PreparedSecret(key, ALGORITHMS[buffer.get(record)], ALL_DIGITS[buffer.get(record + 1)]);
+    }
+
+    private int record(long userId) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = HEADER_LENGTH + middle * ENTRY_LENGTH;
+            long id = buffer.getLong(entry);
+            if (id < userId) {
+                low = middle + 1;
+            } else if (id > userId) {
+                high = middle - 1;
+            } else {
+                return (int) buffer.getLong(entry + 8);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects secrets and writes them as a secret file
+     */
+    public static class Writer {
+
+        private long[] userIds = new long[16];
+        private byte[][] records = new byte[16][];
+        private int count;
+
+        /**
+         * @param userId    User id
+         * @param key       Raw shared secret, from 1 to {@link RawKeyHmac#MAX_KEY_LENGTH} bytes
+         * @param algorithm HMAC algorithm
+         * @param digits    Length of the codes
+         * @param period    Interval length in seconds, from 1 to 65535
+         * @return This writer
+         */
+        public Writer add(long userId, byte[] key, HmacAlgorithm algorithm, Digits digits, int period) {
+            if (key.length == 0 || key.length > RawKeyHmac.MAX_KEY_LENGTH) {
+                throw new IllegalArgumentException("Keys must be 1 to " + RawKeyHmac.MAX_KEY_LENGTH + " bytes long: " + key.length);
+            }
+            if (period <= 0 || period > 0xffff) {
+                throw new IllegalArgumentException("Period out of range: " + period);
+            }
+            if (count == userIds.length) {
+                userIds = Arrays.copyOf(userIds, count << 1);
+                records = Arrays.copyOf(records, count << 1);
+            }
+            byte[] record = new byte[5 + key.length];
+            record[0] = (byte) algorithm.ordinal();
+            record[1] = (byte) digits.ordinal();
+            record[2] = (byte) (period >>> 8);
+            record[3] = (byte) period;
+            record[4] = (byte) key.length;
+            System.arraycopy(key, 0, record, 5, key.length);
+            userIds[count] = userId;
+            records[count] = record;
+            count++;
+            return this;
+        }
+
+        /**
+         * Writes the secrets collected so far, atomically replacing the file
+         *
+         * @param file Destination file
+         * @throws IOException If the file cannot be written
+         */
+        public void write(File file) throws IOException {
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(userIds[a], userIds[b]));
+            long length = HEADER_LENGTH + (long) count * ENTRY_LENGTH;
+            for (int i = 0; i < count; i++) {
+                if (i > 0 && userIds[order[i]] == userIds[order[i - 1]]) {
+                    throw new IllegalArgumentException("Duplicate user id: " + userIds[order[i]]);
+                }
+                length += records[order[i]].length;
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many secrets for a single mapping: " + count);
+            }
+
+            File temporary = new File(file.getPath() + ".tmp");
+            FileOutputStream stream = new FileOutputStream(temporary);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+                out.writeLong(MAGIC);
+                out.writeInt(count);
+                out.writeInt(0);
+                long offset = HEADER_LENGTH + (long) count * ENTRY_LENGTH;
+                for (int i = 0; i < count; i++) {
+                    out.writeLong(userIds[order[i]]);
+                    out.writeLong(offset);
+                    offset += records[order[i]].length;
+                }
+                for (int i = 0; i < count; i++) {
+                    out.write(records[order[i]]);
+                }
+                out.flush();
+                stream.getFD().sync();
+            } finally {
+                stream.close();
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.store;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.core.RawKeyHmac;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Off-heap store of decoded shared secrets indexed by user id. The secrets live in direct buffers outside of the
+ * Java heap, in an open addressing table of fixed size slots, so the heap stays flat and is not scanned by the
+ * garbage collector whatever the number of users. Codes are computed from the key in place, through
+ * {@link RawKeyHmac}, without copying it to the heap.
+ * <p/>
+ * Reads are optimistic and lock free, writes are serialized.
+ */
+public class SecretVault {
+
+    private static final int SLOT_LENGTH = 80;
+    private static final int ID = 0;
+    private static final int STATE = 8;
+    private static final int LENGTH = 9;
+    private static final int ALGORITHM = 10;
+    private static final int DIGITS = 11;
+    private static final int KEY = 16;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+
+    private static final int SEGMENT_SHIFT = 22;
+    private static final int SEGMENT_SLOTS = 1 << SEGMENT_SHIFT;
+    private static final int MAX_SLOTS = 1 << 30;
+
+    private static final HmacAlgorithm[] ALGORITHMS = HmacAlgorithm.values();
+    private static final Digits[] ALL_DIGITS = Digits.values();
+
+    private final StampedLock lock = new StampedLock();
+    private ByteBuffer[] segments;
+    private int mask;
+    private int size;
+    private int occupied;
+
+    /**
+     * @param expectedUsers Expected number of secrets, used for the initial sizing
+     */
+    public SecretVault(int expectedUsers) {
+        long slots = Math.max(16, Long.highestOneBit(Math.max(1L, expectedUsers * 2L - 1)) << 1);
+        allocate((int) Math.min(MAX_SLOTS, slots));
+    }
+
+    /**
+     * Stores or replaces the secret of a user
+     *
+     * @param userId    User id
+     * @param key       Raw shared secret, from 1 to {@link RawKeyHmac#MAX_KEY_LENGTH} bytes
+     * @param algorithm HMAC algorithm
+     * @param digits    Length of the codes
+     */
+    public void put(long userId, byte[] key, HmacAlgorithm algorithm, Digits digits) {
+        if (key.length == 0 || key.length > RawKeyHmac.MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Keys must be 1 to " + RawKeyHmac.MAX_KEY_LENGTH + " bytes long: " + key.length);
+        }
+        long stamp = lock.writeLock();
+        try {
+            if ((occupied + 1) * 4L > (mask + 1L) * 3) {
+                resize(size * 4L > mask + 1L ? (mask + 1) << 1 : mask + 1);
+            }
+            int slot = find(userId);
+            if (slot < 0) {
+                slot = insertionSlot(userId);
+                if (state(slot) == EMPTY) {
+                    occupied++;
+                }
+                size++;
+            }
+            write(slot, userId, key, algorithm, digits);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param userId User id
+     * @return True if a secret was removed
+     */
+    public boolean remove(long userId) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(userId);
+            if (slot < 0) {
+                return false;
+            }
+            ByteBuffer segment = segments[slot >>> SEGMENT_SHIFT];
+            int base = (slot & (SEGMENT_SLOTS - 1)) * SLOT_LENGTH;
+            segment.put(base + STATE, DELETED);
+            for (int i = 0; i < RawKeyHmac.MAX_KEY_LENGTH; i++) {
+                segment.put(base + KEY + i, (byte) 0);
+            }
+            size--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param userId User id
+     * @return True if the vault holds a secret for the user
+     */
+    public boolean contains(long userId) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                boolean found = find(userId) >= 0;
+                if (lock.validate(stamp)) {
+                    return found;
+                }
+            } catch (RuntimeException e) {
+                // A concurrent resize swapped the table, retried below under the read lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return find(userId) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Computes a code of a user straight from the off-heap key
+     *
+     * @param userId  User id
+     * @param counter Interval or counter
+     * @return Truncated code, or -1 if the vault holds no secret for the user
+     */
+    public int code(long userId, long counter) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                int code = codeAt(find(userId), counter);
+                if (lock.validate(stamp)) {
+                    return code;
+                }
+            } catch (RuntimeException e) {
+                // A concurrent write left a torn slot or swapped the table, retried below under the read lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return codeAt(find(userId), counter);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return Number of secrets held by the vault
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int codeAt(int slot, long counter) {
+        if (slot < 0) {
+            return -1;
+        }
+        ByteBuffer segment = segments[slot >>> SEGMENT_SHIFT];
+        int base = (slot & (SEGMENT_SLOTS - 1)) * SLOT_LENGTH;
+        int length = segment.get(base + LENGTH);
+        HmacAlgorithm algorithm = ALGORITHMS[segment.get(base + ALGORITHM)];
+        Digits digits = ALL_DIGITS[segment.get(base + DIGITS)];
+        return RawKeyHmac.code(segment, base + KEY, length, algorithm, digits, counter);
+    }
+
+    private int find(long userId) {
+        ByteBuffer[] segments = this.segments;
+        int mask = this.mask;
+        for (int slot = hash(userId) & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            ByteBuffer segment = segments[slot >>> SEGMENT_SHIFT];
+            int base = (slot & (SEGMENT_SLOTS - 1)) * SLOT_LENGTH;
+            byte state = segment.get(base + STATE);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == USED && segment.getLong(base + ID) == userId) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int insertionSlot(long userId) {
+        int slot = hash(userId) & mask;
+        while (state(slot) == USED) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private byte state(int slot) {
+        return segments[slot >>> SEGMENT_SHIFT].get((slot & (SEGMENT_SLOTS - 1)) * SLOT_LENGTH + STATE);
+    }
+
+    private void write(int slot, long userId, byte[] key, HmacAlgorithm algorithm, Digits digits) {
+        ByteBuffer segment = segments[slot >>> SEGMENT_SHIFT];
+        int base = (slot & (SEGMENT_SLOTS - 1)) * SLOT_LENGTH;
+        segment.putLong(base + ID, userId);
+        segment.put(base + LENGTH, (byte) key.length);
+        segment.put(base + ALGORITHM, (byte) algorithm.ordinal());
+        segment.put(base + DIGITS, (byte) digits.ordinal());
+        for (int i = 0; i < RawKeyHmac.MAX_KEY_LENGTH; i++) {
+            segment.put(base + KEY + i, i < key.length ? key[i] : 0);
+        }
+        segment.put(base + STATE, USED);
+    }
+
+    private void resize(int slots) {
+        if (slots > MAX_SLOTS) {
+            throw new IllegalStateException("Vault is full");
+        }
+        ByteBuffer[] oldSegments = segments;
+        int oldSlots = mask + 1;
+        allocate(slots);
+        occupied = size;
+        for (int slot = 0; slot < oldSlots; slot++) {
+            ByteBuffer segment = oldSegments[slot >>> SEGMENT_SHIFT];
+            int base = (slot & (SEGMENT_SLOTS - 1)) * SLOT_LENGTH;
+            if (segment.get(base + STATE) == USED) {
+                int target = insertionSlot(segment.getLong(base + ID));
+                ByteBuffer targetSegment = segments[target >>> SEGMENT_SHIFT];
+                int targetBase = (target & (SEGMENT_SLOTS - 1)) * SLOT_LENGTH;
+                for (int i = 0; i < SLOT_LENGTH; i++) {
+                    targetSegment.put(targetBase + i, segment.get(base + i));
+                }
+            }
+        }
+    }
+
+    private void allocate(int slots) {
+        int count = Math.max(1, slots >>> SEGMENT_SHIFT);
+        int perSegment = Math.min(slots, SEGMENT_SLOTS);
+        ByteBuffer[] allocated = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            allocated[i] = ByteBuffer.allocateDirect(perSegment * SLOT_LENGTH);
+        }
+        segments = allocated;
+        mask = slots - 1;
+        occupied = 0;
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.stream;
+
+/**
+ * Code submitted by a user at a given time
+ */
+public final class AuthEvent {
+
+    private final long userId;
+    private final int code;
+    private final long timestamp;
+
+    /**
+     * @param userId    User id
+     * @param code      Submitted code
+     * @param timestamp Submission time in seconds since the epoch
+     */
+    public AuthEvent(long userId, int code, long timestamp) {
+        this.userId = userId;
+        this.code = code;
+        this.timestamp = timestamp;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthEvent[userId=" + userId + ", timestamp=" + timestamp + "]";
+    }
+}
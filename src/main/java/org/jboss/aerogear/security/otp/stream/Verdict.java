@@ -0,0 +1,48 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.stream;
+
+/**
+ * Outcome of the verification of an {@link AuthEvent}
+ */
+public final class Verdict {
+
+    private final AuthEvent event;
+    private final boolean valid;
+
+    /**
+     * @param event Verified event
+     * @param valid True if the code of the event is valid
+     */
+    public Verdict(AuthEvent event, boolean valid) {
+        this.event = event;
+        this.valid = valid;
+    }
+
+    public AuthEvent getEvent() {
+        return event;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    @Override
+    public String toString() {
+        return "Verdict[" + event + ", valid=" + valid + "]";
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.stream;
+
+import org.jboss.aerogear.security.otp.core.Codes;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
+
+/**
+ * Reactive Streams processor turning a stream of {@link AuthEvent} into a stream of {@link Verdict}, in order. Each
+ * code is checked against the interval of its own timestamp and the previous one, the window of
+ * {@link org.jboss.aerogear.security.otp.Totp#verify(String)}. Use {@code org.reactivestreams.FlowAdapters} to plug
+ * it into {@code java.util.concurrent.Flow} pipelines.
+ * <p/>
+ * Events are requested upstream by batches and buffered, at most one batch at a time, so the upstream never runs
+ * more than a batch ahead of the downstream demand. The buffer is drained by whichever thread signals, one thread at
+ * a time, verifying up to a batch of events per pass. A single subscriber is supported. A secret lookup that
+ * throws cancels the upstream and ends the stream with its exception.
+ */
+public class VerdictProcessor implements Processor<AuthEvent, Verdict> {
+
+    private static final int DELAY_WINDOW = 1;
+
+    private final LongFunction<PreparedSecret> secrets;
+    private final int period;
+    private final int batchSize;
+
+    private final Queue<AuthEvent> queue = new ConcurrentLinkedQueue<AuthEvent>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicReference<Subscriber<? super Verdict>> downstream = new AtomicReference<Subscriber<? super Verdict>>();
+    private final AtomicReference<Subscription> upstream = new AtomicReference<Subscription>();
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile Throwable badRequest;
+    private volatile boolean cancelled;
+
+    // Only touched by the draining thread
+    private final AuthEvent[] batch;
+    private long requestedUpstream;
+    private long consumed;
+    private boolean terminated;
+
+    /**
+     * Processor for 30 seconds intervals
+     *
+     * @param secrets   Prepared secret of a user id, or null if the user has none
+     * @param batchSize Number of events requested upstream and verified at once
+     */
+    public VerdictProcessor(LongFunction<PreparedSecret> secrets, int batchSize) {
+        this(secrets, 30, batchSize);
+    }
+
+    /**
+     * @param secrets   Prepared secret of a user id, or null if the user has none
+     * @param period    Interval length in seconds
+     * @param batchSize Number of events requested upstream and verified at once
+     */
+    public VerdictProcessor(LongFunction<PreparedSecret> secrets, int period, int batchSize) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.secrets = secrets;
+        this.period = period;
+        this.batchSize = batchSize;
+        this.batch = new AuthEvent[batchSize];
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (!upstream.compareAndSet(null, subscription)) {
+            subscription.cancel();
+            return;
+        }
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(AuthEvent event) {
+        if (event == null) {
+            throw new NullPointerException("Events must not be null");
+        }
+        queue.offer(event);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (throwable == null) {
+            throw new NullPointerException("Errors must not be null");
+        }
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Verdict> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscribers must not be null");
+        }
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("VerdictProcessor supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    badRequest = new IllegalArgumentException("Demand must be positive: " + n);
+                } else {
+                    long current;
+                    do {
+                        current = demand.get();
+                    } while (!demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                Subscription subscription = upstream.get();
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                drain();
+            }
+        });
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Subscriber<? super Verdict> subscriber = downstream.get();
+            if (terminated || cancelled) {
+                queue.clear();
+            } else if (subscriber != null) {
+                if (badRequest != null) {
+                    terminate();
+                    subscriber.onError(badRequest);
+                } else {
+                    drain(subscriber);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drain(Subscriber<? super Verdict> subscriber) {
+        long requested = demand.get();
+        long emitted = 0;
+        while (emitted < requested && !cancelled) {
+            int limit = (int) Math.min(batchSize, requested - emitted);
+            int count = 0;
+            AuthEvent event;
+            while (count < limit && (event = queue.poll()) != null) {
+                batch[count++] = event;
+            }
+            if (count == 0) {
+                break;
+            }
+            consumed += count;
+            emitted += count;
+            try {
+                verify(subscriber, count);
+            } catch (RuntimeException e) {
+                // A failing secret lookup ends the stream rather than escaping to the upstream onNext caller
+                for (int i = 0; i < count; i++) {
+                    batch[i] = null;
+                }
+                terminate();
+                subscriber.onError(e);
+                return;
+            }
+        }
+        if (emitted != 0 && requested != Long.MAX_VALUE) {
+            demand.addAndGet(-emitted);
+        }
+        if (cancelled) {
+            return;
+        }
+
+        if (done && queue.isEmpty()) {
+            terminate();
+            Throwable failure = error;
+            if (failure != null) {
+                subscriber.onError(failure);
+            } else {
+                subscriber.onComplete();
+            }
+            return;
+        }
+
+        Subscription subscription = upstream.get();
+        long credit = requestedUpstream - consumed;
+        if (subscription != null && !done && credit <= batchSize / 2) {
+            requestedUpstream += batchSize - credit;
+            subscription.request(batchSize - credit);
+        }
+    }
+
+    private void verify(Subscriber<? super Verdict> subscriber, int count) {
+        long cachedUserId = 0;
+        PreparedSecret cachedSecret = null;
+        for (int i = 0; i < count; i++) {
+            AuthEvent event = batch[i];
+            batch[i] = null;
+            // Consecutive events of the same user, typical of retries, share a single secret lookup
+            if (cachedSecret == null || cachedUserId != event.getUserId()) {
+                cachedUserId = event.getUserId();
+                cachedSecret = secrets.apply(cachedUserId);
+            }
+            subscriber.onNext(new Verdict(event, cachedSecret != null && matches(cachedSecret, event)));
+        }
+    }
+
+    private boolean matches(PreparedSecret secret, AuthEvent event) {
+        long interval = event.getTimestamp() / period;
+        for (int i = DELAY_WINDOW; i >= 0; --i) {
+            if (Codes.equal(secret.code(interval - i), event.getCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void terminate() {
+        terminated = true;
+        queue.clear();
+        Subscription subscription = upstream.get();
+        if (subscription != null && !done) {
+            subscription.cancel();
+        }
+    }
+}
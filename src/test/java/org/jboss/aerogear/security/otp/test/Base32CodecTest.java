@@ -0,0 +1,122 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.jboss.aerogear.security.otp.codec.Base32Codec;
+import org.junit.Test;
+
+import com.google.authenticator.Base32String;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * We verify that {@link Base32Codec} and Google Authenticator's Base32String encode and decode alike.
+ */
+public class Base32CodecTest {
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567abcdefghijklmnopqrstuvwxyz- ";
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testEncode() throws Exception {
+        for (int i = 0; i < 10000; i++) {
+            byte[] data = new byte[random.nextInt(70)];
+            random.nextBytes(data);
+            String expected = Base32String.encode(data);
+            assertEquals(expected, Base32Codec.encode(data));
+            assertEquals(expected.length(), Base32Codec.encodedLength(data.length));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (int i = 0; i < 10000; i++) {
+            byte[] data = new byte[random.nextInt(70)];
+            random.nextBytes(data);
+            assertArrayEquals(data, Base32Codec.decode(Base32Codec.encode(data)));
+        }
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder encoded = new StringBuilder();
+            if (random.nextBoolean()) {
+                encoded.append(" \t");
+            }
+            int length = random.nextInt(110);
+            for (int j = 0; j < length; j++) {
+                encoded.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            if (random.nextBoolean()) {
+                encoded.append("\n");
+            }
+            String input = encoded.toString();
+            byte[] expected = Base32String.decode(input);
+
+            assertArrayEquals(input, expected, Base32Codec.decode(input));
+            assertEquals(input, expected.length, Base32Codec.decodedLength(input));
+
+            byte[] array = new byte[expected.length + 3];
+            assertEquals(expected.length, Base32Codec.decode(input, array, 3));
+            assertArrayEquals(input, expected, Arrays.copyOfRange(array, 3, array.length));
+
+            ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+            assertEquals(expected.length, Base32Codec.decode(input, buffer));
+            assertArrayEquals(input, expected, buffer.array());
+        }
+    }
+
+    @Test
+    public void testIllegalCharacters() throws Exception {
+        for (String input : new String[]{"B2374TNIQ3HKC44=", "B2374TNIQ3HKC441", "B2374TNI\tQ3HKC446", "B2374TNIQ3HKC44é"}) {
+            try {
+                Base32String.decode(input);
+                fail("Base32String should reject " + input);
+            } catch (Exception e) {
+                // expected
+            }
+            try {
+                Base32Codec.decode(input);
+                fail("Base32Codec should reject " + input);
+            } catch (Base32Codec.DecodingException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDestinationTooSmall() throws Exception {
+        Base32Codec.decode("B2374TNIQ3HKC446", new byte[9], 0);
+    }
+
+    @Test
+    public void testBufferTooSmall() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(9);
+        try {
+            Base32Codec.decode("B2374TNIQ3HKC446", buffer);
+            fail("Base32Codec should reject a buffer of 9 bytes");
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, buffer.position());
+        }
+    }
+}
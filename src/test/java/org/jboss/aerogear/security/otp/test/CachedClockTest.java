@@ -0,0 +1,68 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.core.CachedClock;
+import org.junit.Test;
+
+/**
+ * We verify that the cached clock publishes the same interval as the clock it stands for.
+ */
+public class CachedClockTest {
+
+    @Test
+    public void testDefaultInterval() throws Exception {
+        assertSameInterval(new Clock(), new CachedClock());
+    }
+
+    @Test
+    public void testCustomInterval() throws Exception {
+        assertSameInterval(new Clock(20), new CachedClock(20));
+    }
+
+    @Test
+    public void testBoundary() throws Exception {
+        CachedClock cachedClock = new CachedClock(1);
+        try {
+            long start = cachedClock.getCurrentInterval();
+            Thread.sleep(2500);
+            assertTrue("Ticker should have advanced the interval", cachedClock.getCurrentInterval() >= start + 2);
+            assertSameInterval(new Clock(1), cachedClock);
+        } finally {
+            cachedClock.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidInterval() throws Exception {
+        new CachedClock(0);
+    }
+
+    private static void assertSameInterval(Clock clock, CachedClock cachedClock) {
+        try {
+            // Tolerate a boundary crossed between the two reads
+            long expected = clock.getCurrentInterval();
+            long actual = cachedClock.getCurrentInterval();
+            assertTrue("Expected " + expected + " but was " + actual, actual == expected || actual == expected - 1);
+        } finally {
+            cachedClock.close();
+        }
+    }
+}
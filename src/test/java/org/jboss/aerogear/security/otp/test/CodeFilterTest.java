@@ -0,0 +1,130 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.core.CodeFilter;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Random;
+
+/**
+ * We verify that {@link CodeFilter} never rejects a valid code and lets few wrong ones through.
+ */
+public class CodeFilterTest {
+
+    private static final long INTERVAL = 45187109L;
+    private static final int SECRETS = 50000;
+
+    @Mock
+    private Clock clock;
+    private CodeFilter filter;
+    private PreparedSecret[] secrets;
+    private final Random random = new Random(42);
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL);
+        filter = new CodeFilter(clock);
+        secrets = new PreparedSecret[SECRETS];
+        for (int i = 0; i < SECRETS; i++) {
+            byte[] key = new byte[20];
+            random.nextBytes(key);
+            secrets[i] = new PreparedSecret(key);
+            filter.register(i, secrets[i]);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        filter.close();
+    }
+
+    @Test
+    public void testNoFilterLetsCodesThrough() throws Exception {
+        assertTrue(filter.mightBeValid(0, -1));
+        assertFalse(filter.verify(0, secrets[0], -1));
+        assertTrue(filter.verify(0, secrets[0], secrets[0].code(INTERVAL)));
+    }
+
+    @Test
+    public void testValidCodes() throws Exception {
+        filter.build(INTERVAL - 1);
+        filter.build(INTERVAL);
+        byte[] key = new byte[20];
+        random.nextBytes(key);
+        PreparedSecret late = new PreparedSecret(key);
+        filter.register(SECRETS, late);
+
+        for (int i = 0; i < SECRETS; i++) {
+            assertTrue("Secret " + i, filter.verify(i, secrets[i], secrets[i].code(INTERVAL)));
+            assertTrue("Secret " + i, filter.verify(i, secrets[i], secrets[i].code(INTERVAL - 1)));
+        }
+        assertTrue(filter.verify(SECRETS, late, late.code(INTERVAL)));
+        assertTrue(filter.verify(SECRETS, late, late.code(INTERVAL - 1)));
+    }
+
+    @Test
+    public void testWrongCodes() throws Exception {
+        filter.build(INTERVAL - 1);
+        filter.build(INTERVAL);
+        int passed = 0;
+        for (int i = 0; i < SECRETS; i++) {
+            int code = random.nextInt(1000000);
+            if (filter.mightBeValid(i, code)) {
+                passed++;
+            } else {
+                assertNotEquals(secrets[i].code(INTERVAL), code);
+                assertNotEquals(secrets[i].code(INTERVAL - 1), code);
+            }
+        }
+        assertTrue("Passed " + passed, passed < SECRETS / 20);
+    }
+
+    @Test
+    public void testIntervalBoundary() throws Exception {
+        filter.build(INTERVAL - 1);
+        filter.build(INTERVAL);
+        filter.build(INTERVAL + 1);
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 1);
+        for (int i = 0; i < SECRETS; i += 101) {
+            assertTrue(filter.mightBeValid(i, secrets[i].code(INTERVAL + 1)));
+            assertTrue(filter.mightBeValid(i, secrets[i].code(INTERVAL)));
+        }
+        // The filter of the next interval is missing, so the window is no longer covered
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 2);
+        assertTrue(filter.mightBeValid(0, -1));
+    }
+
+    @Test
+    public void testVerifyReadsClockOnce() throws Exception {
+        filter.build(INTERVAL - 1);
+        filter.build(INTERVAL);
+        // A boundary crossed between the filter and the HMACs must not shift the window of the HMACs
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL, INTERVAL + 1);
+        assertTrue(filter.verify(0, secrets[0], secrets[0].code(INTERVAL - 1)));
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.core.CodeIndex;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Random;
+
+/**
+ * We verify that {@link CodeIndex} resolves a code to the same users as verifying it against every registered
+ * secret.
+ */
+public class CodeIndexTest {
+
+    private static final long INTERVAL = 45187109L;
+    private static final int USERS = 20000;
+
+    @Mock
+    private Clock clock;
+    private CodeIndex index;
+    private PreparedSecret[] secrets;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL);
+        index = new CodeIndex(clock);
+        Random random = new Random(42);
+        secrets = new PreparedSecret[USERS];
+        for (int i = 0; i < USERS; i++) {
+            byte[] key = new byte[20];
+            random.nextBytes(key);
+            secrets[i] = new PreparedSecret(key);
+            index.register(i, secrets[i]);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        index.close();
+    }
+
+    @Test
+    public void testCandidates() throws Exception {
+        assertEquals(USERS, index.size());
+        for (int i = 0; i < USERS; i += 97) {
+            assertCandidates(secrets[i].code(INTERVAL));
+            assertCandidates(secrets[i].code(INTERVAL - 1));
+        }
+        assertEquals(0, index.candidates(-1).length);
+    }
+
+    @Test
+    public void testIntervalBoundary() throws Exception {
+        int code = secrets[0].code(INTERVAL + 1);
+        index.build(INTERVAL + 1);
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 1);
+        assertCandidates(code);
+        assertCandidates(secrets[0].code(INTERVAL));
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 2);
+        assertCandidates(code);
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 3);
+        assertCandidates(code);
+    }
+
+    @Test
+    public void testRegistrationUpdates() throws Exception {
+        int code = secrets[7].code(INTERVAL);
+        assertTrue(contains(index.candidates(code), 7));
+        assertTrue(index.unregister(7));
+        assertFalse(index.unregister(7));
+        assertFalse(contains(index.candidates(code), 7));
+        assertEquals(USERS - 1, index.size());
+
+        index.register(7, secrets[8]);
+        assertTrue(contains(index.candidates(secrets[8].code(INTERVAL)), 7));
+        index.register(7, secrets[7]);
+        assertTrue(contains(index.candidates(code), 7));
+    }
+
+    @Test
+    public void testHint() throws Exception {
+        int code = secrets[3].code(INTERVAL);
+        for (long userId : index.candidates(code, id -> id % 2 == 1)) {
+            assertEquals(1, userId % 2);
+        }
+        assertTrue(contains(index.candidates(code, id -> id == 3), 3));
+        assertEquals(0, index.candidates(code, id -> false).length);
+    }
+
+    private void assertCandidates(int code) {
+        long currentInterval = clock.getCurrentInterval();
+        long[] candidates = index.candidates(code);
+        int expected = 0;
+        for (int i = 0; i < USERS; i++) {
+            if (secrets[i].code(currentInterval) == code || secrets[i].code(currentInterval - 1) == code) {
+                assertTrue("User " + i, contains(candidates, i));
+                expected++;
+            }
+        }
+        assertEquals(expected, candidates.length);
+    }
+
+    private static boolean contains(long[] values, long value) {
+        for (long candidate : values) {
+            if (candidate == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
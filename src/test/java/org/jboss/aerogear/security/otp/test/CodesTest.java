@@ -0,0 +1,96 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.Codes;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * We verify that {@link Codes} parses exactly the codes that PasscodeGenerator would compare equal and compares
+ * them as == does.
+ */
+public class CodesTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testParse() throws Exception {
+        assertEquals(2941, Codes.parse("002941", Digits.SIX));
+        assertEquals(0, Codes.parse("000000", Digits.SIX));
+        assertEquals(999999, Codes.parse("999999", Digits.SIX));
+        assertEquals(12345678, Codes.parse(new StringBuilder("12345678"), Digits.EIGHT));
+        for (int i = 0; i < 10000; i++) {
+            int code = random.nextInt(10000000);
+            assertEquals(code, Codes.parse(String.format("%07d", code), Digits.SEVEN));
+        }
+    }
+
+    @Test
+    public void testParseInvalid() throws Exception {
+        String[] invalid = {null, "", "2941", "0002941", "00294a", "-02941", "+02941", " 02941", "02941 ",
+                "0029/1", "0029:1", "\u0660\u0660\u0662\u0669\u0664\u0661",
+                "\uff10\uff10\uff12\uff19\uff14\uff11"};
+        for (String code : invalid) {
+            assertEquals(String.valueOf(code), Codes.INVALID, Codes.parse(code, Digits.SIX));
+        }
+    }
+
+    @Test
+    public void testEqual() throws Exception {
+        assertTrue(Codes.equal(0, 0));
+        assertTrue(Codes.equal(Integer.MIN_VALUE, Integer.MIN_VALUE));
+        assertFalse(Codes.equal(0, Integer.MIN_VALUE));
+        assertFalse(Codes.equal(Codes.INVALID, 0));
+        for (int i = 0; i < 10000; i++) {
+            int a = random.nextInt(1000000);
+            int b = random.nextBoolean() ? a : random.nextInt(1000000);
+            assertEquals(a == b, Codes.equal(a, b));
+        }
+    }
+
+    @Test
+    public void testIndexOf() throws Exception {
+        assertEquals(-1, Codes.indexOf(new int[0], 0));
+        assertEquals(0, Codes.indexOf(new int[]{7, 7}, 7));
+        for (int i = 0; i < 10000; i++) {
+            int[] codes = new int[1 + random.nextInt(9)];
+            for (int j = 0; j < codes.length; j++) {
+                codes[j] = random.nextInt(20);
+            }
+            int code = random.nextInt(20);
+            int expected = -1;
+            for (int j = codes.length - 1; j >= 0; j--) {
+                if (codes[j] == code) {
+                    expected = j;
+                }
+            }
+            assertEquals(expected, Codes.indexOf(codes, code));
+        }
+    }
+
+    @Test
+    public void testLength() throws Exception {
+        assertEquals(6, Codes.length(Digits.SIX));
+        assertEquals(7, Codes.length(Digits.SEVEN));
+        assertEquals(8, Codes.length(Digits.EIGHT));
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.bouncycastle.crypto.Mac;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.jboss.aerogear.security.otp.api.Base32;
+import org.jboss.aerogear.security.otp.core.CounterHmacSha1;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * We verify bit for bit that {@link CounterHmacSha1} and its unrolled kernel produce the MACs of Bouncy Castle's
+ * HMac over SHA1Digest, the signer of PasscodeGenerator, for keys shorter and longer than a block.
+ */
+public class CounterHmacSha1Test {
+
+    private static final long INTERVAL = 45187109L;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testAgainstSha1Digest() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            byte[] key = new byte[random.nextInt(130)];
+            random.nextBytes(key);
+            long counter = random.nextBoolean() ? random.nextLong() : INTERVAL + random.nextInt(1000);
+            byte[] expected = reference(key, counter);
+            assertArrayEquals("Key length " + key.length, expected, new CounterHmacSha1(key).mac(counter));
+        }
+    }
+
+    @Test
+    public void testSharedSecret() throws Exception {
+        byte[] key = Base32.decode("B2374TNIQ3HKC446");
+        CounterHmacSha1 mac = new CounterHmacSha1(key);
+        byte[] out = new byte[CounterHmacSha1.MAC_LENGTH + 4];
+        for (long counter = INTERVAL - 10; counter < INTERVAL + 10; counter++) {
+            byte[] expected = reference(key, counter);
+            mac.mac(counter, out, 4);
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[j], out[4 + j]);
+            }
+            assertArrayEquals(expected, mac.sign(message(counter)));
+        }
+        assertEquals(2941, new PreparedSecret("R5MB5FAQNX5UIPWL").code(INTERVAL));
+    }
+
+    @Test
+    public void testEdgeCounters() throws Exception {
+        byte[] key = new byte[20];
+        random.nextBytes(key);
+        CounterHmacSha1 mac = new CounterHmacSha1(key);
+        for (long counter : new long[]{0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, 0x80000000L, 0xffffffffL}) {
+            assertArrayEquals(reference(key, counter), mac.mac(counter));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMessageLength() throws Exception {
+        new CounterHmacSha1(new byte[10]).sign(new byte[9]);
+    }
+
+    private static byte[] reference(byte[] key, long counter) {
+        Mac mac = new HMac(new SHA1Digest());
+        mac.init(new KeyParameter(key));
+        byte[] message = message(counter);
+        mac.update(message, 0, message.length);
+        byte[] out = new byte[mac.getMacSize()];
+        mac.doFinal(out, 0);
+        return out;
+    }
+
+    private static byte[] message(long counter) {
+        byte[] message = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            message[i] = (byte) counter;
+            counter >>>= 8;
+        }
+        return message;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.core.DriftTracker;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.core.WindowVerifier;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * We verify that {@link DriftTracker} learns the drift of a skewed phone, such as the one of TotpTest whose code of
+ * interval t-1 is submitted 31 seconds later, and re-centres its window on it.
+ */
+public class DriftTrackerTest {
+
+    private static final long INTERVAL = 45187109L;
+
+    @Mock
+    private Clock clock;
+    private PreparedSecret secret;
+    private DriftTracker tracker;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL);
+        secret = new PreparedSecret("B2374TNIQ3HKC446");
+        tracker = new DriftTracker(clock);
+    }
+
+    @Test
+    public void testSkewedPhone() throws Exception {
+        assertFalse(tracker.isSettled(1L));
+        // Totp.verify would reject this code, two intervals old
+        assertEquals(-2, tracker.offset(1L, secret, secret.code(INTERVAL - 2)));
+        assertEquals(-2, tracker.drift(1L));
+        assertFalse(tracker.isSettled(1L));
+
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 1);
+        assertEquals(-2, tracker.offset(1L, secret, secret.code(INTERVAL - 1)));
+        assertTrue(tracker.isSettled(1L));
+
+        // Settled: the centre and the interval before it only
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 2);
+        assertEquals(-2, tracker.offset(1L, secret, secret.code(INTERVAL)));
+        assertEquals(WindowVerifier.NO_MATCH, tracker.offset(1L, secret, secret.code(INTERVAL + 2)));
+        assertEquals(WindowVerifier.NO_MATCH, tracker.offset(1L, secret, secret.code(INTERVAL - 1)));
+        assertEquals(-2, tracker.drift(1L));
+    }
+
+    @Test
+    public void testLateSubmissionKeepsCentre() throws Exception {
+        tracker.verify(1L, secret, secret.code(INTERVAL + 1));
+        tracker.verify(1L, secret, secret.code(INTERVAL + 1));
+        assertTrue(tracker.isSettled(1L));
+        assertEquals(0, tracker.offset(1L, secret, secret.code(INTERVAL)));
+        assertEquals(1, tracker.drift(1L));
+        assertTrue(tracker.isSettled(1L));
+    }
+
+    @Test
+    public void testDriftChange() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            assertTrue(tracker.verify(1L, secret, secret.code(INTERVAL)));
+        }
+        assertTrue(tracker.isSettled(1L));
+
+        // The phone clock moved ahead: rejected by the narrow window once, then found by the full window
+        int code = secret.code(INTERVAL + 2);
+        int attempts = 1;
+        while (!tracker.verify(1L, secret, code)) {
+            attempts++;
+            assertTrue(attempts < 10);
+        }
+        assertEquals(2, attempts);
+        assertEquals(2, tracker.drift(1L));
+        assertFalse(tracker.isSettled(1L));
+    }
+
+    @Test
+    public void testWindowBounds() throws Exception {
+        assertEquals(WindowVerifier.NO_MATCH, tracker.offset(1L, secret, secret.code(INTERVAL - 3)));
+        assertEquals(WindowVerifier.NO_MATCH, tracker.offset(1L, secret, secret.code(INTERVAL + 3)));
+        assertEquals(0, tracker.drift(1L));
+    }
+
+    @Test
+    public void testManyUsers() throws Exception {
+        for (long userId = 0; userId < 10000; userId++) {
+            int offset = (int) (userId % 5) - 2;
+            assertTrue(tracker.verify(userId, secret, secret.code(INTERVAL + offset)));
+        }
+        for (long userId = 0; userId < 10000; userId++) {
+            assertEquals((int) (userId % 5) - 2, tracker.drift(userId));
+        }
+        for (long userId = 0; userId < 10000; userId += 2) {
+            assertTrue(tracker.forget(userId));
+        }
+        for (long userId = 0; userId < 10000; userId++) {
+            assertEquals(userId % 2 == 0 ? 0 : (int) (userId % 5) - 2, tracker.drift(userId));
+        }
+        assertFalse(tracker.forget(0L));
+    }
+}
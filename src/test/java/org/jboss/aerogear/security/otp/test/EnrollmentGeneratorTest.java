@@ -0,0 +1,115 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.jboss.aerogear.security.otp.Totp;
+import org.jboss.aerogear.security.otp.api.Base32;
+import org.jboss.aerogear.security.otp.store.EnrollmentGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * We verify that {@link EnrollmentGenerator} provisions every user of a range exactly once, with distinct secrets
+ * and the URI of {@link Totp#uri(String)}.
+ */
+public class EnrollmentGeneratorTest {
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        final ConcurrentMap<Long, String[]> records = new ConcurrentHashMap<Long, String[]>();
+        new EnrollmentGenerator(pool, EnrollmentGenerator.DEFAULT_SECRET_LENGTH).generate(1000L, 20000,
+                userId -> "user#" + userId, (userId, secret, uri) -> {
+                    assertNull(records.put(userId, new String[]{secret, uri}));
+                });
+
+        assertEquals(20000, records.size());
+        Set<String> secrets = new HashSet<String>();
+        for (long userId = 1000L; userId < 21000L; userId++) {
+            String[] record = records.get(userId);
+            assertNotNull("User " + userId, record);
+            assertEquals(16, record[0].length());
+            assertEquals(10, Base32.decode(record[0]).length);
+            assertEquals(new Totp(record[0]).uri("user#" + userId), record[1]);
+            assertTrue(secrets.add(record[0]));
+        }
+    }
+
+    @Test
+    public void testSecretLength() throws Exception {
+        final ConcurrentMap<Long, String> secrets = new ConcurrentHashMap<Long, String>();
+        new EnrollmentGenerator(pool, 20).generate(0L, 3, userId -> "john", (userId, secret, uri) -> {
+            secrets.put(userId, secret);
+        });
+        assertEquals(3, secrets.size());
+        for (String secret : secrets.values()) {
+            assertEquals(32, secret.length());
+        }
+    }
+
+    @Test
+    public void testEmptyRange() throws Exception {
+        new EnrollmentGenerator().generate(0L, 0, userId -> "john", (userId, secret, uri) -> {
+            fail("No record expected");
+        });
+    }
+
+    @Test
+    public void testSinkFailure() throws Exception {
+        try {
+            new EnrollmentGenerator(pool, 10).generate(0L, 10000, userId -> "john", (userId, secret, uri) -> {
+                if (userId == 4242L) {
+                    throw new IllegalStateException("Sink failure");
+                }
+            });
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // Failures thrown by another worker are wrapped by the pool
+            Throwable cause = e;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertEquals("Sink failure", cause.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCount() throws Exception {
+        new EnrollmentGenerator().generate(0L, -1, userId -> "john", (userId, secret, uri) -> {
+        });
+    }
+}
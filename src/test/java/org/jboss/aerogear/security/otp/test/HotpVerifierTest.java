@@ -0,0 +1,174 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.jboss.aerogear.security.otp.core.HotpVerifier;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.store.MappedCounterLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+/**
+ * We verify the HOTP verifier against the RFC 4226 test vectors and the persistence of its counter log.
+ */
+public class HotpVerifierTest {
+
+    private static final int[] RFC4226_CODES = {755224, 287082, 359152, 969429, 338314, 254676, 287922, 162583, 399871, 520489};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PreparedSecret secret;
+    private File file;
+    private MappedCounterLog log;
+
+    @Before
+    public void setUp() throws Exception {
+        secret = new PreparedSecret("12345678901234567890".getBytes("US-ASCII"));
+        file = new File(folder.getRoot(), "counters.log");
+        log = new MappedCounterLog(file, 4096);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        log.close();
+    }
+
+    @Test
+    public void testRfc4226Vectors() throws Exception {
+        for (int counter = 0; counter < RFC4226_CODES.length; counter++) {
+            assertEquals(RFC4226_CODES[counter], secret.code(counter));
+        }
+    }
+
+    @Test
+    public void testSequentialCodes() throws Exception {
+        HotpVerifier verifier = new HotpVerifier(log, 0);
+        for (int code : RFC4226_CODES) {
+            assertTrue(verifier.verify(1L, secret, code));
+            assertFalse("Code should be consumed", verifier.verify(1L, secret, code));
+        }
+        assertEquals(RFC4226_CODES.length, log.get(1L));
+        assertEquals("Other tokens should not move", 0L, log.get(2L));
+    }
+
+    @Test
+    public void testLookAhead() throws Exception {
+        HotpVerifier verifier = new HotpVerifier(log, 3);
+        assertFalse("Code beyond the look-ahead should be rejected", verifier.verify(1L, secret, RFC4226_CODES[4]));
+        assertTrue(verifier.verify(1L, secret, RFC4226_CODES[3]));
+        assertEquals(4L, log.get(1L));
+        assertFalse("Skipped codes should be rejected", verifier.verify(1L, secret, RFC4226_CODES[1]));
+    }
+
+    @Test
+    public void testResync() throws Exception {
+        HotpVerifier verifier = new HotpVerifier(log, 1);
+        assertFalse(verifier.resync(1L, secret, RFC4226_CODES[6], RFC4226_CODES[8], 20));
+        assertFalse(verifier.resync(1L, secret, RFC4226_CODES[6], RFC4226_CODES[7], 5));
+        assertTrue(verifier.resync(1L, secret, RFC4226_CODES[6], RFC4226_CODES[7], 20));
+        assertEquals(8L, log.get(1L));
+        assertTrue(verifier.verify(1L, secret, RFC4226_CODES[8]));
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        HotpVerifier verifier = new HotpVerifier(log);
+        assertTrue(verifier.verify(1L, secret, RFC4226_CODES[2]));
+        assertTrue(verifier.verify(2L, secret, RFC4226_CODES[0]));
+        log.close();
+
+        log = new MappedCounterLog(file, 4096);
+        assertEquals(3L, log.get(1L));
+        assertEquals(1L, log.get(2L));
+        assertFalse(new HotpVerifier(log).verify(1L, secret, RFC4226_CODES[2]));
+    }
+
+    @Test
+    public void testTornRecord() throws Exception {
+        assertTrue(log.advance(1L, 0L, 5L));
+        assertTrue(log.advance(1L, 5L, 9L));
+        log.close();
+
+        // Corrupt the check of the second record, as a power loss in the middle of the write would
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(8 + 24 + 16);
+            raf.writeLong(42L);
+        } finally {
+            raf.close();
+        }
+
+        log = new MappedCounterLog(file, 4096);
+        assertEquals("Replay should stop at the torn record", 5L, log.get(1L));
+        assertTrue(log.advance(1L, 5L, 6L));
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        for (long counter = 0; counter < 1000; counter++) {
+            assertTrue(log.advance(counter % 7, counter / 7, counter / 7 + 1));
+        }
+        log.close();
+
+        log = new MappedCounterLog(file, 4096);
+        for (long token = 0; token < 7; token++) {
+            assertEquals((1000 - token + 6) / 7, log.get(token));
+        }
+    }
+
+    @Test
+    public void testFailedCompaction() throws Exception {
+        log.close();
+        // A log holding a single record, so the next advance compacts it
+        file = new File(folder.getRoot(), "small.log");
+        log = new MappedCounterLog(file, 8 + 24);
+        assertTrue(log.advance(1L, 0L, 1L));
+
+        // A non-empty directory in the way of the compacted file makes the compaction fail
+        File obstacle = new File(file.getPath() + ".compact");
+        assertTrue(new File(obstacle, "file").mkdirs());
+        try {
+            log.advance(1L, 1L, 2L);
+            fail("The compaction should fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals("An unpersisted advance should be rolled back", 1L, log.get(1L));
+
+        assertTrue(new File(obstacle, "file").delete());
+        assertTrue(log.advance(1L, 1L, 2L));
+        log.close();
+        log = new MappedCounterLog(file, 8 + 24);
+        assertEquals(2L, log.get(1L));
+    }
+
+    @Test
+    public void testConcurrentAdvance() throws Exception {
+        assertTrue(log.advance(1L, 0L, 3L));
+        assertFalse("Stale counter should be refused", log.advance(1L, 0L, 2L));
+        assertEquals(3L, log.get(1L));
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.core.WindowVerifier;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * We verify that the hot path emits its Flight Recorder events, with their fields, into a recording read back from
+ * disk.
+ */
+public class JfrEventsTest {
+
+    private static final long INTERVAL = 45187109L;
+
+    @Before
+    public void setUp() throws Exception {
+        boolean available;
+        try {
+            Class.forName("jdk.jfr.Recording");
+            available = true;
+        } catch (ClassNotFoundException e) {
+            available = false;
+        }
+        Assume.assumeTrue(available);
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        Clock clock = new Clock() {
+            @Override
+            public long getCurrentInterval() {
+                return INTERVAL;
+            }
+        };
+        List<RecordedEvent> events;
+        Recording recording = new Recording();
+        try {
+            recording.enable("org.jboss.aerogear.otp.Base32Decode");
+            recording.enable("org.jboss.aerogear.otp.SecretPreparation");
+            recording.enable("org.jboss.aerogear.otp.CodeComputation");
+            recording.enable("org.jboss.aerogear.otp.WindowVerification");
+            recording.start();
+
+            PreparedSecret secret = new PreparedSecret("B2374TNIQ3HKC446", HmacAlgorithm.SHA256, Digits.EIGHT);
+            WindowVerifier verifier = new WindowVerifier(clock, 1, 0);
+            assertTrue(verifier.verify(secret, secret.code(INTERVAL - 1)));
+            assertTrue(verifier.window(secret).verify(secret.code(INTERVAL)));
+
+            recording.stop();
+            File file = File.createTempFile("otp", ".jfr");
+            try {
+                recording.dump(file.toPath());
+                events = RecordingFile.readAllEvents(file.toPath());
+            } finally {
+                file.delete();
+            }
+        } finally {
+            recording.close();
+        }
+
+        RecordedEvent decode = single(events, "org.jboss.aerogear.otp.Base32Decode");
+        assertEquals(16, decode.getInt("length"));
+
+        RecordedEvent preparation = single(events, "org.jboss.aerogear.otp.SecretPreparation");
+        assertEquals("SHA256", preparation.getString("algorithm"));
+        assertEquals(10, preparation.getInt("keyLength"));
+
+        int computations = 0;
+        boolean uncached = false;
+        boolean cached = false;
+        for (RecordedEvent event : events) {
+            String name = event.getEventType().getName();
+            if (name.equals("org.jboss.aerogear.otp.CodeComputation")) {
+                assertEquals("SHA256", event.getString("algorithm"));
+                computations++;
+            } else if (name.equals("org.jboss.aerogear.otp.WindowVerification")) {
+                assertTrue(event.getBoolean("matched"));
+                assertFalse(event.getDuration().isNegative());
+                if (event.getBoolean("cached")) {
+                    assertEquals(0, event.getInt("offset"));
+                    cached = true;
+                } else {
+                    assertEquals(-1, event.getInt("offset"));
+                    uncached = true;
+                }
+            }
+        }
+        // Two codes by the test, two for the verifier and two for the cached window
+        assertEquals(6, computations);
+        assertTrue(uncached && cached);
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        RecordedEvent found = null;
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                assertNull("More than one " + name, found);
+                found = event;
+            }
+        }
+        assertNotNull("No " + name, found);
+        return found;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.core.MacPool;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * We verify that every {@link MacPool} strategy computes the codes of {@link PreparedSecret}, alone and with many
+ * threads sharing the pool.
+ */
+public class MacPoolTest {
+
+    private static final long INTERVAL = 45187109L;
+    private static final String SECRET = "B2374TNIQ3HKC446";
+
+    @Test
+    public void testCodes() throws Exception {
+        for (HmacAlgorithm algorithm : HmacAlgorithm.values()) {
+            for (Digits digits : Digits.values()) {
+                PreparedSecret secret = new PreparedSecret(SECRET, algorithm, digits);
+                for (MacPool pool : pools(secret, 4)) {
+                    for (long interval = INTERVAL - 100; interval < INTERVAL + 100; interval++) {
+                        assertEquals(algorithm + " " + digits, secret.code(interval), pool.code(interval));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLeadingZeros() throws Exception {
+        PreparedSecret secret = new PreparedSecret("R5MB5FAQNX5UIPWL");
+        for (MacPool pool : pools(secret, 1)) {
+            assertEquals(2941, pool.code(INTERVAL));
+        }
+    }
+
+    @Test
+    public void testSharedAcrossThreads() throws Exception {
+        final PreparedSecret secret = new PreparedSecret(SECRET);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            // A single stripe keeps most threads on the fallback path
+            for (final MacPool pool : pools(secret, 1)) {
+                List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+                for (int t = 0; t < 16; t++) {
+                    final long first = INTERVAL + t * 1000;
+                    results.add(executor.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws Exception {
+                            for (long interval = first; interval < first + 1000; interval++) {
+                                if (pool.code(interval) != secret.code(interval)) {
+                                    return false;
+                                }
+                            }
+                            return true;
+                        }
+                    }));
+                }
+                for (Future<Boolean> result : results) {
+                    assertTrue(result.get());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyKey() throws Exception {
+        MacPool.threadLocal(new byte[0], HmacAlgorithm.SHA1, Digits.SIX);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStripes() throws Exception {
+        MacPool.striped(new PreparedSecret(SECRET).getKey(), HmacAlgorithm.SHA1, Digits.SIX, 0);
+    }
+
+    private static MacPool[] pools(PreparedSecret secret, int stripes) {
+        byte[] key = secret.getKey();
+        return new MacPool[]{
+                MacPool.threadLocal(key, secret.getAlgorithm(), secret.getDigits()),
+                MacPool.perCarrier(key, secret.getAlgorithm(), secret.getDigits()),
+                MacPool.striped(key, secret.getAlgorithm(), secret.getDigits(), stripes)
+        };
+    }
+}
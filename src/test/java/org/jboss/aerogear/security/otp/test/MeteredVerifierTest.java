@@ -0,0 +1,144 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.core.LatencyHistogram;
+import org.jboss.aerogear.security.otp.core.MeteredVerifier;
+import org.jboss.aerogear.security.otp.core.OtpMetrics;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.core.RecordingMetrics;
+import org.jboss.aerogear.security.otp.core.ReplayGuard;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * We verify the outcomes counted by {@link MeteredVerifier} and the precision of {@link LatencyHistogram}.
+ */
+public class MeteredVerifierTest {
+
+    private static final long INTERVAL = 45187109L;
+
+    @Mock
+    private Clock clock;
+    private PreparedSecret secret;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL);
+        secret = new PreparedSecret("B2374TNIQ3HKC446");
+    }
+
+    @Test
+    public void testOffsets() throws Exception {
+        RecordingMetrics metrics = new RecordingMetrics();
+        MeteredVerifier verifier = new MeteredVerifier(clock, 2, 1, metrics);
+        assertEquals(secret.code(INTERVAL), verifier.now(secret));
+        assertTrue(verifier.verify(1L, secret, secret.code(INTERVAL)));
+        assertTrue(verifier.verify(1L, secret, secret.code(INTERVAL)));
+        assertTrue(verifier.verify(1L, secret, secret.code(INTERVAL - 2)));
+        assertTrue(verifier.verify(1L, secret, secret.code(INTERVAL + 1)));
+        assertFalse(verifier.verify(1L, secret, secret.code(INTERVAL - 3)));
+
+        assertEquals(1, metrics.getGenerated());
+        assertEquals(2, metrics.getAccepted(0));
+        assertEquals(0, metrics.getAccepted(-1));
+        assertEquals(1, metrics.getAccepted(-2));
+        assertEquals(1, metrics.getAccepted(1));
+        assertEquals(1, metrics.getRejected());
+        assertEquals(1, metrics.getGenerateLatency().count());
+        assertEquals(5, metrics.getVerifyLatency().count());
+    }
+
+    @Test
+    public void testReplays() throws Exception {
+        RecordingMetrics metrics = new RecordingMetrics();
+        MeteredVerifier verifier = new MeteredVerifier(clock, 1, new ReplayGuard(clock), metrics);
+        int code = secret.code(INTERVAL - 1);
+        assertTrue(verifier.verify(1L, secret, code));
+        assertFalse(verifier.verify(1L, secret, code));
+        assertTrue(verifier.verify(2L, secret, code));
+        assertEquals(2, metrics.getAccepted(-1));
+        assertEquals(1, metrics.getReplayed());
+        assertEquals(0, metrics.getRejected());
+    }
+
+    @Test
+    public void testReplayWindow() throws Exception {
+        RecordingMetrics metrics = new RecordingMetrics();
+        try {
+            new MeteredVerifier(clock, 3, new ReplayGuard(clock), metrics);
+            fail("The window should not exceed the one of the replay guard");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        MeteredVerifier verifier = new MeteredVerifier(clock, 3, new ReplayGuard(clock, 3, 16), metrics);
+        assertTrue(verifier.verify(1L, secret, secret.code(INTERVAL - 2)));
+        assertEquals(1, metrics.getAccepted(-2));
+        assertEquals(0, metrics.getReplayed());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        MeteredVerifier verifier = new MeteredVerifier(clock, 1, 0, OtpMetrics.DISABLED);
+        assertEquals(secret.code(INTERVAL), verifier.now(secret));
+        assertTrue(verifier.verify(1L, secret, secret.code(INTERVAL - 1)));
+        assertFalse(verifier.verify(1L, secret, secret.code(INTERVAL + 1)));
+    }
+
+    @Test
+    public void testSampling() throws Exception {
+        RecordingMetrics metrics = new RecordingMetrics(16, 1);
+        MeteredVerifier verifier = new MeteredVerifier(clock, 1, 0, metrics);
+        for (int i = 0; i < 16000; i++) {
+            verifier.verify(1L, secret, secret.code(INTERVAL));
+        }
+        assertEquals(16000, metrics.getAccepted(0));
+        long timed = metrics.getVerifyLatency().count();
+        assertTrue("Timed " + timed, timed > 500 && timed < 2000);
+    }
+
+    @Test
+    public void testHistogramPrecision() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.valueAt(0.5));
+        for (long value = 1; value <= 1000000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1000000, histogram.count());
+        assertEquals(1, histogram.valueAt(0));
+        assertWithin(500000, histogram.valueAt(0.5));
+        assertWithin(990000, histogram.valueAt(0.99));
+        assertWithin(1000000, histogram.valueAt(1));
+
+        histogram.reset();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.valueAt(0.5));
+        assertEquals(Long.MAX_VALUE, histogram.valueAt(1));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected * 0.035);
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.jboss.aerogear.security.otp.Totp;
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.codec.OtpauthUri;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.junit.Test;
+
+import java.net.URLEncoder;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * We verify that {@link OtpauthUri} writes the URIs of {@link Totp#uri(String)}, the cases of TotpTest included,
+ * into builders and buffers alike.
+ */
+public class OtpauthUriTest {
+
+    private static final String SECRET = "B2374TNIQ3HKC446";
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testUri() throws Exception {
+        assertEquals(new Totp(SECRET).uri("john"), write("john"));
+        assertEquals(String.format("otpauth://totp/%s?secret=%s", "john", SECRET), write("john"));
+    }
+
+    @Test
+    public void testUriEncoding() throws Exception {
+        assertEquals(new Totp(SECRET).uri("john#doe"), write("john#doe"));
+        assertEquals(String.format("otpauth://totp/%s?secret=%s", "john%23doe", SECRET), write("john#doe"));
+    }
+
+    @Test
+    public void testRandomNames() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        for (int i = 0; i < 10000; i++) {
+            String name = randomName();
+            String expected = "otpauth://totp/" + URLEncoder.encode(name, "UTF-8") + "?secret=" + SECRET;
+
+            builder.setLength(0);
+            OtpauthUri.write(name, SECRET, builder);
+            assertEquals(name, expected, builder.toString());
+
+            // Through Buffer, JDK 9+ compile the calls to overrides missing from Java 8
+            ((Buffer) buffer).clear();
+            OtpauthUri.write(name, SECRET, buffer);
+            ((Buffer) buffer).flip();
+            assertEquals(name, expected, StandardCharsets.US_ASCII.decode(buffer).toString());
+        }
+    }
+
+    @Test
+    public void testParameters() throws Exception {
+        String expected = "otpauth://totp/john+doe?secret=" + SECRET
+                + "&issuer=ACME+%26+Co&algorithm=SHA256&digits=8&period=60";
+
+        StringBuilder builder = new StringBuilder();
+        OtpauthUri.write("john doe", SECRET, "ACME & Co", HmacAlgorithm.SHA256, Digits.EIGHT, 60, builder);
+        assertEquals(expected, builder.toString());
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        OtpauthUri.write("john doe", SECRET, "ACME & Co", HmacAlgorithm.SHA256, Digits.EIGHT, 60, buffer);
+        ((Buffer) buffer).flip();
+        assertEquals(expected, StandardCharsets.US_ASCII.decode(buffer).toString());
+
+        builder.setLength(0);
+        OtpauthUri.write("john", SECRET, null, HmacAlgorithm.SHA1, Digits.SEVEN, 30, builder);
+        assertEquals("otpauth://totp/john?secret=" + SECRET + "&digits=7", builder.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPeriod() throws Exception {
+        OtpauthUri.write("john", SECRET, null, HmacAlgorithm.SHA1, Digits.SIX, 0, new StringBuilder());
+    }
+
+    private String write(String name) {
+        StringBuilder builder = new StringBuilder();
+        OtpauthUri.write(name, SECRET, builder);
+        return builder.toString();
+    }
+
+    /**
+     * @return Name mixing ASCII, accented letters, CJK, supplementary characters and unpaired surrogates
+     */
+    private String randomName() {
+        StringBuilder name = new StringBuilder();
+        int length = random.nextInt(20);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    name.append((char) (0x20 + random.nextInt(0x5f)));
+                    break;
+                case 1:
+                    name.append((char) (0x80 + random.nextInt(0x780)));
+                    break;
+                case 2:
+                    name.append((char) (0x800 + random.nextInt(0xd000)));
+                    break;
+                case 3:
+                    name.appendCodePoint(0x10000 + random.nextInt(0x100000));
+                    break;
+                case 4:
+                    name.append((char) (0xd800 + random.nextInt(0x800)));
+                    break;
+                default:
+                    name.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return name.toString();
+    }
+}
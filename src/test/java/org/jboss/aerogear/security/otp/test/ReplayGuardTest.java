@@ -0,0 +1,116 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.core.ReplayGuard;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * We verify that consumed codes are rejected within their window and that expired intervals are recycled.
+ */
+public class ReplayGuardTest {
+
+    private static final long INTERVAL = 45187109L;
+
+    @Mock
+    private Clock clock;
+    private PreparedSecret secret = new PreparedSecret("B2374TNIQ3HKC446");
+    private ReplayGuard guard;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL);
+        guard = new ReplayGuard(clock, 1, 16);
+    }
+
+    @Test
+    public void testReplayRejected() throws Exception {
+        int code = secret.code(INTERVAL);
+        assertTrue("First use should be accepted", guard.verify(1L, secret, code));
+        assertFalse("Replay should be rejected", guard.verify(1L, secret, code));
+        assertTrue(guard.isConsumed(1L, INTERVAL));
+    }
+
+    @Test
+    public void testReplayRejectedInNextInterval() throws Exception {
+        int code = secret.code(INTERVAL);
+        assertTrue(guard.verify(1L, secret, code));
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 1);
+        assertFalse("Replay should be rejected while the code is in the window", guard.verify(1L, secret, code));
+        assertTrue("Next code should be accepted", guard.verify(1L, secret, secret.code(INTERVAL + 1)));
+    }
+
+    @Test
+    public void testSecretsAreIndependent() throws Exception {
+        int code = secret.code(INTERVAL);
+        assertTrue(guard.verify(1L, secret, code));
+        assertTrue("Other ids should not be affected", guard.verify(2L, secret, code));
+        assertFalse(guard.verify(3L, secret, (code + 1) % 1000000));
+    }
+
+    @Test
+    public void testExpiredIntervals() throws Exception {
+        assertTrue(guard.consume(1L, INTERVAL));
+        assertFalse("Future intervals should be rejected", guard.consume(1L, INTERVAL + 1));
+
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 2);
+        assertFalse("Expired intervals should be rejected", guard.consume(1L, INTERVAL));
+        assertTrue(guard.consume(1L, INTERVAL + 2));
+        assertFalse("Recycled bucket should not remember the expired interval", guard.isConsumed(1L, INTERVAL));
+    }
+
+    @Test
+    public void testStaleClockKeepsNewerInterval() throws Exception {
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 2);
+        assertTrue(guard.consume(7L, INTERVAL + 2));
+
+        // A thread reading the clock one tick late consumes the interval sharing the ring slot of INTERVAL + 2
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 1);
+        assertFalse(guard.consume(7L, INTERVAL));
+        // Other ids may share the stripe, their stale consumptions must not wipe it either
+        for (long id = 8; id < 100; id++) {
+            guard.consume(id, INTERVAL);
+        }
+
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 2);
+        assertFalse("Replay should be rejected", guard.consume(7L, INTERVAL + 2));
+        assertTrue(guard.isConsumed(7L, INTERVAL + 2));
+    }
+
+    @Test
+    public void testGrowth() throws Exception {
+        for (long id = 0; id < 20000; id++) {
+            assertTrue(guard.consume(id, INTERVAL));
+        }
+        for (long id = 0; id < 20000; id++) {
+            assertFalse(guard.consume(id, INTERVAL));
+        }
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 2);
+        for (long id = 0; id < 20000; id++) {
+            assertTrue(guard.consume(id, INTERVAL + 2));
+        }
+    }
+}
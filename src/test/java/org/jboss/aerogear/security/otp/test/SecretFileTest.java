@@ -0,0 +1,128 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.store.SecretFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * We verify that codes computed from the mapped keys of a {@link SecretFile} match {@link PreparedSecret}.
+ */
+public class SecretFileTest {
+
+    private static final long TIME = 45187109L * 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testCodes() throws Exception {
+        int users = 5000;
+        PreparedSecret[] secrets = new PreparedSecret[users];
+        int[] periods = new int[users];
+        SecretFile.Writer writer = new SecretFile.Writer();
+        // Added in reverse order so that the writer has to sort the index
+        for (int i = users - 1; i >= 0; i--) {
+            byte[] key = new byte[10 + random.nextInt(55)];
+            random.nextBytes(key);
+            HmacAlgorithm algorithm = HmacAlgorithm.values()[i % 3];
+            Digits digits = Digits.values()[i % 2 * 2];
+            periods[i] = i % 4 == 0 ? 60 : 30;
+            secrets[i] = new PreparedSecret(key, algorithm, digits);
+            writer.add(userId(i), key, algorithm, digits, periods[i]);
+        }
+        File file = folder.newFile("secrets.bin");
+        writer.write(file);
+
+        SecretFile secretFile = new SecretFile(file);
+        assertEquals(users, secretFile.size());
+        for (int i = 0; i < users; i++) {
+            long interval = TIME / periods[i];
+            assertTrue(secretFile.contains(userId(i)));
+            assertEquals(periods[i], secretFile.period(userId(i)));
+            assertEquals("User " + i, secrets[i].code(interval), secretFile.code(userId(i), TIME));
+            assertEquals(secrets[i].code(interval), secretFile.prepare(userId(i)).code(interval));
+        }
+        assertFalse(secretFile.contains(-1L));
+        assertEquals(-1, secretFile.period(-1L));
+        assertEquals(-1, secretFile.code(-1L, TIME));
+        assertNull(secretFile.prepare(-1L));
+    }
+
+    @Test
+    public void testVerify() throws Exception {
+        byte[] key = "12345678901234567890".getBytes("US-ASCII");
+        File file = folder.newFile("secrets.bin");
+        new SecretFile.Writer().add(7L, key, HmacAlgorithm.SHA1, Digits.SIX, 30).write(file);
+        SecretFile secretFile = new SecretFile(file);
+        PreparedSecret secret = new PreparedSecret(key);
+        long interval = TIME / 30;
+
+        assertTrue(secretFile.verify(7L, secret.code(interval), TIME, 0));
+        assertTrue(secretFile.verify(7L, secret.code(interval - 1), TIME, 1));
+        assertFalse(secretFile.verify(7L, secret.code(interval - 1), TIME, 0));
+        assertFalse(secretFile.verify(7L, secret.code(interval + 1), TIME, 1));
+        assertFalse(secretFile.verify(8L, secret.code(interval), TIME, 1));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        File file = folder.newFile("secrets.bin");
+        new SecretFile.Writer().write(file);
+        SecretFile secretFile = new SecretFile(file);
+        assertEquals(0, secretFile.size());
+        assertFalse(secretFile.contains(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateUser() throws Exception {
+        new SecretFile.Writer()
+                .add(1L, new byte[20], HmacAlgorithm.SHA1, Digits.SIX, 30)
+                .add(1L, new byte[20], HmacAlgorithm.SHA1, Digits.SIX, 30)
+                .write(folder.newFile("secrets.bin"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotASecretFile() throws Exception {
+        File file = folder.newFile("secrets.bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[32]);
+        } finally {
+            out.close();
+        }
+        new SecretFile(file);
+    }
+
+    private static long userId(int i) {
+        return i * 7919L + (1L << 40);
+    }
+}
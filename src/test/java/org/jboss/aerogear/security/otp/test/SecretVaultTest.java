@@ -0,0 +1,96 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.store.SecretVault;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * We verify that codes computed from the off-heap keys of {@link SecretVault} match {@link PreparedSecret}.
+ */
+public class SecretVaultTest {
+
+    private static final long INTERVAL = 45187109L;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testCodes() throws Exception {
+        SecretVault vault = new SecretVault(16);
+        int users = 5000;
+        PreparedSecret[] secrets = new PreparedSecret[users];
+        for (int i = 0; i < users; i++) {
+            byte[] key = new byte[10 + random.nextInt(55)];
+            random.nextBytes(key);
+            HmacAlgorithm algorithm = HmacAlgorithm.values()[i % 3];
+            Digits digits = Digits.values()[i % 2 * 2];
+            secrets[i] = new PreparedSecret(key, algorithm, digits);
+            vault.put(userId(i), key, algorithm, digits);
+        }
+        assertEquals(users, vault.size());
+        for (int i = 0; i < users; i++) {
+            assertTrue(vault.contains(userId(i)));
+            assertEquals("User " + i, secrets[i].code(INTERVAL), vault.code(userId(i), INTERVAL));
+        }
+        assertFalse(vault.contains(-1L));
+        assertEquals(-1, vault.code(-1L, INTERVAL));
+    }
+
+    @Test
+    public void testReplaceAndRemove() throws Exception {
+        SecretVault vault = new SecretVault(4);
+        byte[] first = "12345678901234567890".getBytes("US-ASCII");
+        byte[] second = "abcdefghij".getBytes("US-ASCII");
+        vault.put(7L, first, HmacAlgorithm.SHA1, Digits.SIX);
+        vault.put(7L, second, HmacAlgorithm.SHA256, Digits.EIGHT);
+        assertEquals(1, vault.size());
+        assertEquals(new PreparedSecret(second, HmacAlgorithm.SHA256, Digits.EIGHT).code(INTERVAL), vault.code(7L, INTERVAL));
+
+        assertTrue(vault.remove(7L));
+        assertFalse(vault.remove(7L));
+        assertFalse(vault.contains(7L));
+        assertEquals(0, vault.size());
+
+        // Tombstones must not hide entries inserted behind them
+        for (long id = 0; id < 1000; id++) {
+            vault.put(id, first, HmacAlgorithm.SHA1, Digits.SIX);
+            if (id % 2 == 0) {
+                vault.remove(id);
+            }
+        }
+        assertEquals(500, vault.size());
+        for (long id = 0; id < 1000; id++) {
+            assertEquals(id % 2 != 0, vault.contains(id));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyTooLong() throws Exception {
+        new SecretVault(4).put(1L, new byte[65], HmacAlgorithm.SHA1, Digits.SIX);
+    }
+
+    private static long userId(int i) {
+        return i * 7919L + (1L << 40);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+import org.jboss.aerogear.security.otp.Totp;
+import org.jboss.aerogear.security.otp.api.Base32;
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.core.TotpGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.authenticator.GoogleAuthenticator;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * We verify that the int codes of {@link TotpGenerator} match both {@link Totp} and Google Authenticator.
+ */
+public class TotpGeneratorTest {
+
+    @Mock
+    private Clock clock;
+    private String sharedSecret = "B2374TNIQ3HKC446";
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testLeadingZeros() throws Exception {
+        when(clock.getCurrentInterval()).thenReturn(45187109L);
+        TotpGenerator generator = new TotpGenerator("R5MB5FAQNX5UIPWL", clock);
+        assertEquals(2941, generator.code());
+    }
+
+    @Test
+    public void testCustomInterval() throws Exception {
+        Clock customClock = new Clock(20);
+        TotpGenerator generator = new TotpGenerator(sharedSecret, customClock);
+        assertEquals(new Totp(sharedSecret, customClock).now(), String.format("%06d", generator.code()));
+    }
+
+    @Test
+    public void testRandomIntervals() throws Exception {
+        Random random = new Random(42);
+        TotpGenerator generator = new TotpGenerator(sharedSecret, clock);
+        Totp totp = new Totp(sharedSecret, clock);
+        for (int i = 0; i < 1000; i++) {
+            long interval = random.nextLong() >>> 1;
+            when(clock.getCurrentInterval()).thenReturn(interval);
+            String expected = GoogleAuthenticator.computePin(sharedSecret, clock);
+            assertEquals(expected, totp.now());
+            assertEquals(expected, String.format("%06d", generator.code()));
+            assertEquals(Integer.parseInt(expected), generator.code(interval));
+        }
+    }
+
+    @Test
+    public void testRandomSecrets() throws Exception {
+        Random random = new Random(7);
+        when(clock.getCurrentInterval()).thenReturn(45187109L);
+        for (int length : new int[]{10, 20, 32, 64, 65, 100}) {
+            byte[] key = new byte[length];
+            random.nextBytes(key);
+            String secret = Base32.encode(key);
+            TotpGenerator generator = new TotpGenerator(secret, clock);
+            assertEquals("Key of " + length + " bytes", new Totp(secret, clock).now(), String.format("%06d", generator.code()));
+        }
+    }
+
+    @Test
+    public void testPreparedSecret() throws Exception {
+        byte[] key = Base32.decode(sharedSecret);
+        PreparedSecret prepared = new PreparedSecret(key);
+        assertEquals(new PreparedSecret(sharedSecret), prepared);
+        assertArrayEquals(key, prepared.getKey());
+
+        when(clock.getCurrentInterval()).thenReturn(45187109L);
+        assertEquals(GoogleAuthenticator.computePin(sharedSecret, clock), String.format("%06d", prepared.code(45187109L)));
+        assertEquals(new TotpGenerator(sharedSecret, clock).code(), new TotpGenerator(prepared, clock).code());
+    }
+
+    @Test
+    public void testAlgorithmsAgainstJce() throws Exception {
+        Random random = new Random(11);
+        for (HmacAlgorithm algorithm : HmacAlgorithm.values()) {
+            Mac mac = Mac.getInstance(algorithm.getMacName());
+            for (int length : new int[]{10, 20, 32, 64, 65, 128, 129, 200}) {
+                byte[] key = new byte[length];
+                random.nextBytes(key);
+                mac.init(new SecretKeySpec(key, "RAW"));
+                for (Digits digits : Digits.values()) {
+                    PreparedSecret prepared = new PreparedSecret(key, algorithm, digits);
+                    for (int i = 0; i < 20; i++) {
+                        long counter = random.nextLong();
+                        byte[] hash = mac.doFinal(ByteBuffer.allocate(8).putLong(counter).array());
+                        int offset = hash[hash.length - 1] & 0xf;
+                        int binary = ((hash[offset] & 0x7f) << 24) | ((hash[offset + 1] & 0xff) << 16)
+                                | ((hash[offset + 2] & 0xff) << 8) | (hash[offset + 3] & 0xff);
+                        assertEquals(algorithm + " key of " + length + " bytes", binary % digits.getValue(), prepared.code(counter));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSecret() throws Exception {
+        new TotpGenerator("1NV4L1D!", clock);
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.bouncycastle.crypto.Mac;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.jboss.aerogear.security.otp.Totp;
+import org.jboss.aerogear.security.otp.api.Base32;
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.core.TotpGenerator;
+import org.junit.Test;
+
+import com.google.authenticator.PasscodeGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Differential stress test: many threads share a pool of {@link Totp} and {@link TotpGenerator} instances and every
+ * code they compute, for random secrets and intervals, is compared with the one of a thread confined
+ * PasscodeGenerator. Any divergence means that sharing an instance across threads is unsafe.
+ * <p/>
+ * The default run is kept short, longer sweeps can be requested with -Dstress.threads and -Dstress.iterations
+ * (per thread), e.g. {@code mvn test -Dtest=TotpStressTest -Dstress.iterations=1000000}.
+ */
+public class TotpStressTest {
+
+    private final static Logger LOGGER = Logger.getLogger(TotpStressTest.class.getName());
+
+    private static final int SECRETS = 64;
+    private static final int THREADS = Integer.getInteger("stress.threads",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    private static final int ITERATIONS = Integer.getInteger("stress.iterations", 5000);
+
+    @Test
+    public void testSharedInstances() throws Exception {
+        final Random random = new Random(42);
+        final ThreadLocalClock clock = new ThreadLocalClock();
+        final byte[][] keys = new byte[SECRETS][];
+        final Totp[] totps = new Totp[SECRETS];
+        final TotpGenerator[] generators = new TotpGenerator[SECRETS];
+        for (int i = 0; i < SECRETS; i++) {
+            keys[i] = new byte[10 + random.nextInt(55)];
+            random.nextBytes(keys[i]);
+            String secret = Base32.encode(keys[i]);
+            totps[i] = new Totp(secret, clock);
+            generators[i] = new TotpGenerator(secret, clock);
+        }
+
+        final AtomicLong divergences = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Long>> workers = new ArrayList<Callable<Long>>();
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = random.nextLong();
+            workers.add(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    Random random = new Random(seed);
+                    PasscodeGenerator[] references = new PasscodeGenerator[SECRETS];
+                    for (int i = 0; i < SECRETS; i++) {
+                        Mac mac = new HMac(new SHA1Digest());
+                        mac.init(new KeyParameter(keys[i]));
+                        references[i] = new PasscodeGenerator(mac, clock);
+                    }
+                    start.await();
+
+                    long checked = 0;
+                    for (int n = 0; n < ITERATIONS; n++) {
+                        int i = random.nextInt(SECRETS);
+                        long interval = random.nextLong() >>> 1;
+                        clock.set(interval);
+
+                        String expected = references[i].generateResponseCode(interval);
+                        String totpCode = totps[i].now();
+                        int generatorCode = generators[i].code();
+                        if (!expected.equals(totpCode) || Integer.parseInt(expected) != generatorCode) {
+                            if (divergences.getAndIncrement() == 0) {
+                                LOGGER.severe("Divergence for secret " + Base32.encode(keys[i]) + " at interval "
+                                        + interval + ": expected " + expected + ", Totp " + totpCode
+                                        + ", TotpGenerator " + generatorCode);
+                            }
+                        }
+                        checked++;
+                    }
+                    return checked;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Long>> results = new ArrayList<Future<Long>>();
+            for (Callable<Long> worker : workers) {
+                results.add(executor.submit(worker));
+            }
+            start.countDown();
+            long checked = 0;
+            for (Future<Long> result : results) {
+                checked += result.get();
+            }
+            LOGGER.info("Checked " + checked + " codes on " + THREADS + " threads");
+            assertEquals((long) THREADS * ITERATIONS, checked);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("Codes diverging from PasscodeGenerator", 0, divergences.get());
+    }
+
+    /**
+     * Clock giving each thread its own interval, so a shared Totp can be driven at random intervals.
+     */
+    private static class ThreadLocalClock extends Clock {
+
+        private final ThreadLocal<long[]> interval = new ThreadLocal<long[]>() {
+            @Override
+            protected long[] initialValue() {
+                return new long[1];
+            }
+        };
+
+        void set(long value) {
+            interval.get()[0] = value;
+        }
+
+        @Override
+        public long getCurrentInterval() {
+            return interval.get()[0];
+        }
+    }
+}
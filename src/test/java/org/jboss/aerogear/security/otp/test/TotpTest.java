@@ -19,7 +19,12 @@ package org.jboss.aerogear.security.otp.test;
 import static org.junit.Assert.*;
 
 import org.jboss.aerogear.security.otp.Totp;
+import org.jboss.aerogear.security.otp.api.Base32;
 import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.api.Digits;
+import org.jboss.aerogear.security.otp.core.BatchVerifier;
+import org.jboss.aerogear.security.otp.core.HmacAlgorithm;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -29,6 +34,7 @@ import com.google.authenticator.GoogleAuthenticator;
 
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.Random;
 import java.util.TimeZone;
 import java.util.logging.Logger;
 
@@ -221,4 +227,72 @@ public class TotpTest {
         when(clock.getCurrentInterval()).thenReturn(addElapsedTime(61));
         assertFalse("OTP should be invalid", totp.verify(ourOTP));
     }
+
+    @Test
+    public void testBatchVerify() throws Exception {
+        Random random = new Random(42);
+        int size = 200;
+        long currentInterval = addElapsedTime(0);
+        PreparedSecret[] secrets = new PreparedSecret[size];
+        int[] codes = new int[size];
+        Totp[] totps = new Totp[size];
+
+        for (int i = 0; i < size; i++) {
+            byte[] key = new byte[10];
+            random.nextBytes(key);
+            String secret = Base32.encode(key);
+            secrets[i] = new PreparedSecret(secret);
+            totps[i] = new Totp(secret, clock);
+
+            // Mix codes of the current, previous and expired intervals with random guesses
+            when(clock.getCurrentInterval()).thenReturn(currentInterval - random.nextInt(3));
+            codes[i] = random.nextInt(4) == 0 ? random.nextInt(1000000) : Integer.parseInt(totps[i].now());
+        }
+
+        when(clock.getCurrentInterval()).thenReturn(currentInterval);
+        long[] results = new BatchVerifier(clock).verify(secrets, codes);
+
+        int valid = 0;
+        for (int i = 0; i < size; i++) {
+            boolean expected = totps[i].verify(String.format("%06d", codes[i]));
+            assertEquals("Pair " + i, expected, BatchVerifier.isValid(results, i));
+            valid += expected ? 1 : 0;
+        }
+        assertTrue("Batch should mix valid and invalid codes", valid > 0 && valid < size);
+    }
+
+    /**
+     * Test vectors of RFC 6238 appendix B, each algorithm using its own seed length. The last six digits of the
+     * HMAC-SHA1 codes must match the six digits codes of both implementations.
+     */
+    @Test
+    public void testRfc6238Vectors() throws Exception {
+        String seed = "1234567890123456789012345678901234567890123456789012345678901234";
+        PreparedSecret sha1 = new PreparedSecret(seed.substring(0, 20).getBytes("US-ASCII"), HmacAlgorithm.SHA1, Digits.EIGHT);
+        PreparedSecret sha256 = new PreparedSecret(seed.substring(0, 32).getBytes("US-ASCII"), HmacAlgorithm.SHA256, Digits.EIGHT);
+        PreparedSecret sha512 = new PreparedSecret(seed.getBytes("US-ASCII"), HmacAlgorithm.SHA512, Digits.EIGHT);
+        String sha1Secret = Base32.encode(sha1.getKey());
+        Totp sha1Totp = new Totp(sha1Secret, clock);
+
+        long[] times = {59L, 1111111109L, 1111111111L, 1234567890L, 2000000000L, 20000000000L};
+        String[][] expected = {
+                {"94287082", "46119246", "90693936"},
+                {"07081804", "68084774", "25091201"},
+                {"14050471", "67062674", "99943326"},
+                {"89005924", "91819424", "93441116"},
+                {"69279037", "90698825", "38618901"},
+                {"65353130", "77737706", "47863826"}
+        };
+
+        for (int i = 0; i < times.length; i++) {
+            long interval = times[i] / 30;
+            assertEquals("SHA1 at " + times[i], expected[i][0], String.format("%08d", sha1.code(interval)));
+            assertEquals("SHA256 at " + times[i], expected[i][1], String.format("%08d", sha256.code(interval)));
+            assertEquals("SHA512 at " + times[i], expected[i][2], String.format("%08d", sha512.code(interval)));
+
+            when(clock.getCurrentInterval()).thenReturn(interval);
+            assertEquals(expected[i][0].substring(2), sha1Totp.now());
+            assertEquals(expected[i][0].substring(2), GoogleAuthenticator.computePin(sha1Secret, clock));
+        }
+    }
 }
@@ -0,0 +1,255 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.stream.AuthEvent;
+import org.jboss.aerogear.security.otp.stream.Verdict;
+import org.jboss.aerogear.security.otp.stream.VerdictProcessor;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * We verify the verdicts and the backpressure of {@link VerdictProcessor} fed by an in-memory publisher.
+ */
+public class VerdictProcessorTest {
+
+    private static final long TIME = 45187109L * 30;
+    private static final int BATCH = 8;
+
+    private PreparedSecret secret;
+    private VerdictProcessor processor;
+
+    @Before
+    public void setUp() throws Exception {
+        secret = new PreparedSecret("B2374TNIQ3HKC446");
+        processor = new VerdictProcessor(userId -> userId == 1L ? secret : null, BATCH);
+    }
+
+    @Test
+    public void testVerdicts() throws Exception {
+        List<AuthEvent> events = new ArrayList<AuthEvent>();
+        for (int i = 0; i < 100; i++) {
+            long time = TIME + i * 7;
+            events.add(new AuthEvent(1L, secret.code(time / 30), time));
+            events.add(new AuthEvent(1L, secret.code(time / 30 - 1), time));
+            events.add(new AuthEvent(1L, secret.code(time / 30 - 2), time));
+            events.add(new AuthEvent(2L, secret.code(time / 30), time));
+        }
+        ListPublisher publisher = new ListPublisher(events);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+        subscriber.request(Long.MAX_VALUE);
+
+        assertTrue(subscriber.completed);
+        assertEquals(events.size(), subscriber.verdicts.size());
+        for (int i = 0; i < events.size(); i++) {
+            Verdict verdict = subscriber.verdicts.get(i);
+            assertSame(events.get(i), verdict.getEvent());
+            assertEquals("Event " + i, i % 4 < 2, verdict.isValid());
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        List<AuthEvent> events = new ArrayList<AuthEvent>();
+        for (int i = 0; i < 100; i++) {
+            events.add(new AuthEvent(1L, secret.code(TIME / 30), TIME));
+        }
+        ListPublisher publisher = new ListPublisher(events);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+        assertTrue(publisher.emitted <= BATCH);
+
+        subscriber.request(3);
+        assertEquals(3, subscriber.verdicts.size());
+        assertTrue(publisher.emitted <= 3 + BATCH);
+
+        subscriber.request(50);
+        assertEquals(53, subscriber.verdicts.size());
+        assertTrue(publisher.emitted <= 53 + BATCH);
+        assertFalse(subscriber.completed);
+
+        subscriber.request(47);
+        assertEquals(100, subscriber.verdicts.size());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        List<AuthEvent> events = new ArrayList<AuthEvent>();
+        for (int i = 0; i < 100; i++) {
+            events.add(new AuthEvent(1L, 0, TIME));
+        }
+        ListPublisher publisher = new ListPublisher(events);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+        subscriber.request(5);
+        subscriber.subscription.cancel();
+        assertTrue(publisher.cancelled);
+        subscriber.request(5);
+        assertEquals(5, subscriber.verdicts.size());
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        processor.subscribe(subscriber);
+        processor.onSubscribe(new NoopSubscription());
+        processor.onError(new IllegalStateException("Upstream failure"));
+        assertTrue(subscriber.error instanceof IllegalStateException);
+
+        CollectingSubscriber second = new CollectingSubscriber();
+        processor.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+
+        VerdictProcessor other = new VerdictProcessor(userId -> secret, BATCH);
+        CollectingSubscriber invalid = new CollectingSubscriber();
+        other.subscribe(invalid);
+        invalid.request(0);
+        assertTrue(invalid.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testLookupFailure() throws Exception {
+        VerdictProcessor failing = new VerdictProcessor(userId -> {
+            if (userId == 3L) {
+                throw new IllegalStateException("Lookup failure");
+            }
+            return secret;
+        }, BATCH);
+        List<AuthEvent> events = new ArrayList<AuthEvent>();
+        for (int i = 0; i < 20; i++) {
+            events.add(new AuthEvent(i == 5 ? 3L : 1L, secret.code(TIME / 30), TIME));
+        }
+        ListPublisher publisher = new ListPublisher(events);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        publisher.subscribe(failing);
+        failing.subscribe(subscriber);
+        subscriber.request(Long.MAX_VALUE);
+
+        assertTrue(subscriber.error instanceof IllegalStateException);
+        assertEquals(5, subscriber.verdicts.size());
+        assertFalse(subscriber.completed);
+        assertTrue(publisher.cancelled);
+
+        // Late signals are dropped instead of wedging or throwing
+        failing.onNext(new AuthEvent(1L, 0, TIME));
+        failing.onComplete();
+        assertEquals(5, subscriber.verdicts.size());
+        assertFalse(subscriber.completed);
+    }
+
+    /**
+     * Synchronous publisher emitting the elements of a list as they are requested
+     */
+    private static final class ListPublisher implements Publisher<AuthEvent> {
+
+        private final List<AuthEvent> events;
+        int emitted;
+        boolean cancelled;
+        private long requested;
+        private boolean emitting;
+
+        ListPublisher(List<AuthEvent> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super AuthEvent> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (requested > 0 && emitted < events.size() && !cancelled) {
+                        requested--;
+                        subscriber.onNext(events.get(emitted++));
+                    }
+                    emitting = false;
+                    if (emitted == events.size() && !cancelled) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static final class CollectingSubscriber implements Subscriber<Verdict> {
+
+        final List<Verdict> verdicts = new ArrayList<Verdict>();
+        Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        void request(long n) {
+            subscription.request(n);
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Verdict verdict) {
+            verdicts.add(verdict);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static final class NoopSubscription implements Subscription {
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
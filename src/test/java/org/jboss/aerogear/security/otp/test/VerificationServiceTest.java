@@ -0,0 +1,192 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.core.VerificationService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * We verify the verdicts and the per-tenant backpressure of {@link VerificationService}, and that it holds 100k
+ * verifications in flight while their secrets are loading.
+ */
+public class VerificationServiceTest {
+
+    private static final long INTERVAL = 45187109L;
+    private static final int IN_FLIGHT = 100000;
+
+    @Mock
+    private Clock clock;
+    private PreparedSecret secret;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL);
+        secret = new PreparedSecret("B2374TNIQ3HKC446");
+    }
+
+    @Test
+    public void testVerdicts() throws Exception {
+        VerificationService service = new VerificationService(clock,
+                (tenant, userId) -> CompletableFuture.completedFuture(userId == 1L ? secret : null), 16);
+        try {
+            assertTrue(service.verify("a", 1L, secret.code(INTERVAL)).get(10, TimeUnit.SECONDS));
+            assertTrue(service.verify("a", 1L, secret.code(INTERVAL - 1)).get(10, TimeUnit.SECONDS));
+            assertFalse(service.verify("a", 1L, secret.code(INTERVAL - 2)).get(10, TimeUnit.SECONDS));
+            assertFalse(service.verify("a", 2L, secret.code(INTERVAL)).get(10, TimeUnit.SECONDS));
+            assertEquals(0, service.inFlight("a"));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    public void testVerifiesOnExecutor() throws Exception {
+        final List<String> threads = new CopyOnWriteArrayList<String>();
+        Clock recordingClock = new Clock() {
+            @Override
+            public long getCurrentInterval() {
+                threads.add(Thread.currentThread().getName());
+                return INTERVAL;
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "verifier"));
+        ExecutorService io = Executors.newSingleThreadExecutor(task -> new Thread(task, "io"));
+        VerificationService service = new VerificationService(recordingClock,
+                (tenant, userId) -> CompletableFuture.supplyAsync(() -> secret, io), executor, 16);
+        try {
+            assertTrue(service.verify("a", 1L, secret.code(INTERVAL)).get(10, TimeUnit.SECONDS));
+            assertFalse(threads.isEmpty());
+            for (String thread : threads) {
+                assertEquals("verifier", thread);
+            }
+        } finally {
+            service.close();
+            executor.shutdown();
+            io.shutdown();
+        }
+    }
+
+    @Test
+    public void testLoaderFailure() throws Exception {
+        CompletableFuture<PreparedSecret> failed = new CompletableFuture<PreparedSecret>();
+        failed.completeExceptionally(new IllegalStateException("Database down"));
+        VerificationService service = new VerificationService(clock, (tenant, userId) -> failed, Runnable::run, 1);
+        try {
+            service.verify("a", 1L, 0).get();
+            fail("The loader failure must be propagated");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, service.inFlight("a"));
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        List<CompletableFuture<PreparedSecret>> loads = new ArrayList<CompletableFuture<PreparedSecret>>();
+        VerificationService service = new VerificationService(clock, (tenant, userId) -> {
+            CompletableFuture<PreparedSecret> load = new CompletableFuture<PreparedSecret>();
+            loads.add(load);
+            return load;
+        }, Runnable::run, 2);
+
+        CompletableFuture<Boolean> first = service.verify("a", 1L, secret.code(INTERVAL));
+        CompletableFuture<Boolean> second = service.verify("a", 1L, 0);
+        CompletableFuture<Boolean> rejected = service.verify("a", 1L, secret.code(INTERVAL));
+        CompletableFuture<Boolean> otherTenant = service.verify("b", 1L, secret.code(INTERVAL));
+        assertEquals(2, service.inFlight("a"));
+        assertEquals(1, service.inFlight("b"));
+        try {
+            rejected.get();
+            fail("The tenant has no permit left");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        for (CompletableFuture<PreparedSecret> load : loads) {
+            load.complete(secret);
+        }
+        assertTrue(first.get());
+        assertFalse(second.get());
+        assertTrue(otherTenant.get());
+        assertEquals(0, service.inFlight("a"));
+        service.verify("a", 1L, 0);
+        assertEquals(1, service.inFlight("a"));
+    }
+
+    @Test
+    public void testHundredThousandInFlight() throws Exception {
+        ConcurrentLinkedQueue<CompletableFuture<PreparedSecret>> loads = new ConcurrentLinkedQueue<CompletableFuture<PreparedSecret>>();
+        VerificationService service = new VerificationService(clock, (tenant, userId) -> {
+            CompletableFuture<PreparedSecret> load = new CompletableFuture<PreparedSecret>();
+            loads.add(load);
+            return load;
+        }, IN_FLIGHT);
+        try {
+            int code = secret.code(INTERVAL);
+            List<CompletableFuture<Boolean>> verdicts = new ArrayList<CompletableFuture<Boolean>>(IN_FLIGHT);
+            for (int i = 0; i < IN_FLIGHT; i++) {
+                verdicts.add(service.verify("a", i, code));
+            }
+            assertEquals(IN_FLIGHT, service.inFlight("a"));
+            try {
+                service.verify("a", 0L, code).get();
+                fail("The tenant has no permit left");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+
+            long deadline = System.currentTimeMillis() + 60000;
+            int completed = 0;
+            while (completed < IN_FLIGHT && System.currentTimeMillis() < deadline) {
+                CompletableFuture<PreparedSecret> load = loads.poll();
+                if (load == null) {
+                    Thread.yield();
+                } else {
+                    load.complete(secret);
+                    completed++;
+                }
+            }
+            assertEquals(IN_FLIGHT, completed);
+            for (CompletableFuture<Boolean> verdict : verdicts) {
+                assertTrue(verdict.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(0, service.inFlight("a"));
+        } finally {
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * JBoss, Home of Professional Open Source
+ * Copyright Red Hat, Inc., and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.aerogear.security.otp.test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+import org.bouncycastle.crypto.Mac;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.jboss.aerogear.security.otp.api.Base32;
+import org.jboss.aerogear.security.otp.api.Clock;
+import org.jboss.aerogear.security.otp.core.PreparedSecret;
+import org.jboss.aerogear.security.otp.core.WindowVerifier;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.authenticator.PasscodeGenerator;
+
+import java.util.Random;
+
+/**
+ * We verify that {@link WindowVerifier}, with and without cached windows, accepts the same codes as
+ * PasscodeGenerator.verifyTimeoutCode.
+ */
+public class WindowVerifierTest {
+
+    private static final long INTERVAL = 45187109L;
+
+    @Mock
+    private Clock clock;
+    private String sharedSecret = "B2374TNIQ3HKC446";
+    private PreparedSecret secret;
+    private PasscodeGenerator reference;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL);
+        secret = new PreparedSecret(sharedSecret);
+        Mac mac = new HMac(new SHA1Digest());
+        mac.init(new KeyParameter(Base32.decode(sharedSecret)));
+        reference = new PasscodeGenerator(mac, clock);
+    }
+
+    @Test
+    public void testOffsets() throws Exception {
+        WindowVerifier verifier = new WindowVerifier(clock, 2, 1);
+        WindowVerifier.CodeWindow window = verifier.window(secret);
+        for (int offset = -4; offset <= 3; offset++) {
+            int code = secret.code(INTERVAL + offset);
+            int expected = offset >= -2 && offset <= 1 ? offset : WindowVerifier.NO_MATCH;
+            assertEquals("Offset " + offset, expected, verifier.offset(secret, code));
+            assertEquals("Offset " + offset, expected, window.offset(code));
+        }
+    }
+
+    @Test
+    public void testAgainstPasscodeGenerator() throws Exception {
+        Random random = new Random(42);
+        for (int past = 0; past <= 3; past++) {
+            for (int future = 0; future <= 3; future++) {
+                WindowVerifier verifier = new WindowVerifier(clock, past, future);
+                WindowVerifier.CodeWindow window = verifier.window(secret);
+                for (int i = 0; i < 50; i++) {
+                    long interval = INTERVAL + random.nextInt(10);
+                    when(clock.getCurrentInterval()).thenReturn(interval);
+                    int code = random.nextBoolean() ? random.nextInt(1000000) : secret.code(interval + random.nextInt(9) - 4);
+                    boolean expected = reference.verifyTimeoutCode(String.format("%06d", code), past, future);
+                    assertEquals(expected, verifier.verify(secret, code));
+                    assertEquals(expected, window.verify(code));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTextCodes() throws Exception {
+        WindowVerifier verifier = new WindowVerifier(clock, 1, 0);
+        WindowVerifier.CodeWindow window = verifier.window(secret);
+        for (int offset = -2; offset <= 1; offset++) {
+            String code = String.format("%06d", secret.code(INTERVAL + offset));
+            boolean expected = reference.verifyTimeoutCode(code, 1, 0);
+            assertEquals(expected, verifier.verify(secret, code));
+            assertEquals(expected, window.verify(code));
+        }
+        String code = String.format("%06d", secret.code(INTERVAL));
+        for (String malformed : new String[]{null, "", code.substring(1), code + "0", "-" + code.substring(1), "abcdef"}) {
+            assertFalse(verifier.verify(secret, malformed));
+            assertFalse(window.verify(malformed));
+        }
+    }
+
+    @Test
+    public void testWindowFollowsClock() throws Exception {
+        WindowVerifier.CodeWindow window = new WindowVerifier(clock, 0, 0).window(secret);
+        int code = secret.code(INTERVAL);
+        assertTrue(window.verify(code));
+        when(clock.getCurrentInterval()).thenReturn(INTERVAL + 1);
+        assertFalse("Window should move with the clock", window.verify(code));
+        assertTrue(window.verify(secret.code(INTERVAL + 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeWindow() throws Exception {
+        new WindowVerifier(clock, -1, 0);
+    }
+}